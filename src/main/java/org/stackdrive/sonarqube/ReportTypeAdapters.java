@@ -0,0 +1,218 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.stackdrive.sonarqube;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import org.stackdrive.report.model.views.CommentList;
+import org.stackdrive.report.model.views.PlantUmlChart;
+import org.stackdrive.report.model.views.ViewElement;
+import org.stackdrive.report.model.views.table.DataTable;
+import org.stackdrive.report.model.views.table.TableRow;
+import org.stackdrive.report.model.views.tagcloud.TagCloud;
+import org.stackdrive.sonarqube.gson.RuntimeTypeAdapterFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Type adapters of the report tables, binding fields by name without reflection.
+ * Only the fields read by the sensor are bound, other properties are skipped
+ */
+public final class ReportTypeAdapters implements TypeAdapterFactory {
+
+    private ReportTypeAdapters() {
+    }
+
+    /**
+     * Creates report {@link Gson}. It's immutable and thread safe, so one instance is meant to be shared
+     *
+     * @return report gson
+     */
+    public static Gson create() {
+        // registered first so that view element subtypes delegate to these adapters
+        return new GsonBuilder()
+                .registerTypeAdapterFactory(new ReportTypeAdapters())
+                .registerTypeAdapterFactory(viewElementTypeFactory())
+                .create();
+    }
+
+    /**
+     * Returns factory of {@link ViewElement} adapter, choosing the subtype by the "type" field
+     */
+    public static RuntimeTypeAdapterFactory<ViewElement> viewElementTypeFactory() {
+        return RuntimeTypeAdapterFactory
+                .of(ViewElement.class, "type") // Here you specify which is the parent class and what field particularizes the child class.
+                .registerSubtype(DataTable.class, "DataTable") // if the flag equals the class name, you can skip the second parameter. This is only necessary, when the "type" field does not equal the class name.
+                .registerSubtype(PlantUmlChart.class, "PlantUmlChart")
+                .registerSubtype(TagCloud.class, "TagCloud")
+                .registerSubtype(CommentList.class, "CommentList");
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+        Class<? super T> rawType = type.getRawType();
+        if (rawType == DataTable.class) {
+            return (TypeAdapter<T>) new DataTableAdapter(gson.getAdapter(TableRow.class));
+        }
+        if (rawType == TableRow.class) {
+            return (TypeAdapter<T>) new TableRowAdapter().nullSafe();
+        }
+        return null;
+    }
+
+    private static final class DataTableAdapter extends TypeAdapter<DataTable> {
+
+        private static final String TABLE = "table";
+
+        private final TypeAdapter<TableRow> rowAdapter;
+
+        DataTableAdapter(TypeAdapter<TableRow> rowAdapter) {
+            this.rowAdapter = rowAdapter;
+        }
+
+        @Override
+        public DataTable read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            DataTable dataTable = new DataTable();
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case TABLE:
+                        dataTable.setTable(readList(in, rowAdapter));
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+            return dataTable;
+        }
+
+        @Override
+        public void write(JsonWriter out, DataTable value) throws IOException {
+            if (value == null) {
+                out.nullValue();
+                return;
+            }
+            out.beginObject();
+            out.name(TABLE);
+            writeList(out, value.getTable(), rowAdapter);
+            out.endObject();
+        }
+    }
+
+    private static final class TableRowAdapter extends TypeAdapter<TableRow> {
+
+        private static final String IMAGE_CODE = "imageCode";
+
+        private static final String CELL_1 = "cell1";
+
+        private static final String CELL_2 = "cell2";
+
+        private static final String CELL_3 = "cell3";
+
+        private static final String CELL_4 = "cell4";
+
+        @Override
+        public TableRow read(JsonReader in) throws IOException {
+            TableRow row = new TableRow();
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case IMAGE_CODE:
+                        row.setImageCode(readString(in));
+                        break;
+                    case CELL_1:
+                        row.setCell1(readString(in));
+                        break;
+                    case CELL_2:
+                        row.setCell2(readString(in));
+                        break;
+                    case CELL_3:
+                        row.setCell3(readString(in));
+                        break;
+                    case CELL_4:
+                        row.setCell4(readString(in));
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+            return row;
+        }
+
+        @Override
+        public void write(JsonWriter out, TableRow value) throws IOException {
+            out.beginObject();
+            out.name(IMAGE_CODE).value(value.getImageCode());
+            out.name(CELL_1).value(value.getCell1());
+            out.name(CELL_2).value(value.getCell2());
+            out.name(CELL_3).value(value.getCell3());
+            out.name(CELL_4).value(value.getCell4());
+            out.endObject();
+        }
+    }
+
+    private static String readString(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        return in.nextString();
+    }
+
+    private static <E> List<E> readList(JsonReader in, TypeAdapter<E> elementAdapter) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        List<E> list = new ArrayList<>();
+        in.beginArray();
+        while (in.hasNext()) {
+            list.add(elementAdapter.read(in));
+        }
+        in.endArray();
+        return list;
+    }
+
+    private static <E> void writeList(JsonWriter out, List<E> list, TypeAdapter<E> elementAdapter) throws IOException {
+        if (list == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginArray();
+        for (E element : list) {
+            elementAdapter.write(out, element);
+        }
+        out.endArray();
+    }
+}
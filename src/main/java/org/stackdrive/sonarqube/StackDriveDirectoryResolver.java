@@ -0,0 +1,81 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.stackdrive.sonarqube;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Finds <b>.stackdrive</b> directory of a module: module directory first, then its ancestors up to the git root
+ * or the search depth. Probes are cached per directory for the scanner JVM, so sibling modules share
+ * the lookups of their common ancestors
+ */
+final class StackDriveDirectoryResolver {
+
+    private static final String GIT_DIR = ".git";
+
+    private static final Map<Path, Probe> PROBES = new ConcurrentHashMap<>();
+
+    private StackDriveDirectoryResolver() {
+        // utility class
+    }
+
+    /**
+     * Resolves <b>.stackdrive</b> directory
+     *
+     * @param moduleDir      absolute module directory
+     * @param stackDriveDir  name of the directory to find
+     * @param searchDepth    number of ancestors to search above module directory
+     * @return found directory, or the one of the module directory when there is none
+     */
+    static Path resolve(Path moduleDir, String stackDriveDir, int searchDepth) {
+        Path dir = moduleDir.normalize();
+        for (int depth = 0; dir != null && depth <= searchDepth; depth++) {
+            Probe probe = PROBES.computeIfAbsent(dir.resolve(stackDriveDir), path -> new Probe(path));
+            if (probe.exists) {
+                return probe.path;
+            }
+            if (probe.gitRoot) {
+                break;
+            }
+            dir = dir.getParent();
+        }
+        return moduleDir.resolve(stackDriveDir);
+    }
+
+    /**
+     * Result of probing a directory
+     */
+    private static final class Probe {
+
+        private final Path path;
+
+        private final boolean exists;
+
+        private final boolean gitRoot;
+
+        Probe(Path path) {
+            this.path = path;
+            this.exists = Files.isDirectory(path);
+            this.gitRoot = !exists && Files.exists(path.resolveSibling(GIT_DIR));
+        }
+    }
+}
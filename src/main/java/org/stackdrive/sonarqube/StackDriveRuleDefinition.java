@@ -18,8 +18,8 @@
  */
 package org.stackdrive.sonarqube;
 
+import org.stackdrive.sonarqube.model.ProblemRule;
 import org.sonar.api.rule.RuleKey;
-import org.sonar.api.rule.Severity;
 import org.sonar.api.rules.RuleType;
 import org.sonar.api.server.rule.RulesDefinition;
 
@@ -31,42 +31,28 @@ public class StackDriveRuleDefinition implements RulesDefinition {
     static final String REPOSITORY = "StackDrive";
     static final String JAVA_LANGUAGE = "java";
     static final String TAG = "stackdrive";
-    static final RuleKey BUG_ERROR = RuleKey.of(REPOSITORY, "Bug error level scope");
-    static final RuleKey BUG_WARNING = RuleKey.of(REPOSITORY, "Bug warning level scope");
-    static final RuleKey BUG_INFO = RuleKey.of(REPOSITORY, "Bug info level scope");
-    static final RuleKey THREAT_ERROR = RuleKey.of(REPOSITORY, "Threat error level scope");
-    static final RuleKey THREAT_WARNING = RuleKey.of(REPOSITORY, "Threat warning level scope");
-    static final RuleKey THREAT_INFO = RuleKey.of(REPOSITORY, "Threat info level scope");
+    static final RuleKey BUG_ERROR = key(ProblemRule.BUG_ERROR);
+    static final RuleKey BUG_WARNING = key(ProblemRule.BUG_WARNING);
+    static final RuleKey BUG_INFO = key(ProblemRule.BUG_INFO);
+    static final RuleKey THREAT_ERROR = key(ProblemRule.THREAT_ERROR);
+    static final RuleKey THREAT_WARNING = key(ProblemRule.THREAT_WARNING);
+    static final RuleKey THREAT_INFO = key(ProblemRule.THREAT_INFO);
 
     @Override
     public void define(RulesDefinition.Context context) {
         RulesDefinition.NewRepository repository = context.createRepository(REPOSITORY, JAVA_LANGUAGE)
                 .setName("StackDrive bugs & threats");
-        repository.createRule(BUG_ERROR.rule())
-                .setName("StackDrive - Bug error level scope")
-                .setHtmlDescription("StackDrive - Bug error level scope").setTags(TAG)
-                .setType(RuleType.BUG).setSeverity(Severity.MAJOR);
-        repository.createRule(BUG_WARNING.rule())
-                .setName("StackDrive - Bug warning level scope")
-                .setHtmlDescription("StackDrive - Bug warning level scope").setTags(TAG)
-                .setType(RuleType.BUG).setSeverity(Severity.MINOR);
-        repository.createRule(BUG_INFO.rule())
-                .setName("StackDrive - Bug info level scope")
-                .setHtmlDescription("StackDrive - Bug info level scope").setTags(TAG)
-                .setType(RuleType.BUG).setSeverity(Severity.INFO);
-        repository.createRule(THREAT_ERROR.rule())
-                .setName("StackDrive - Threat error level scope")
-                .setHtmlDescription("StackDrive - Threat error level scope").setTags(TAG)
-                .setType(RuleType.VULNERABILITY).setSeverity(Severity.MAJOR);
-        repository.createRule(THREAT_WARNING.rule())
-                .setName("StackDrive - Threat warning level scope")
-                .setHtmlDescription("StackDrive - Threat warning level scope").setTags(TAG)
-                .setType(RuleType.VULNERABILITY).setSeverity(Severity.MINOR);
-        repository.createRule(THREAT_INFO.rule())
-                .setName("StackDrive - Threat info level scope")
-                .setHtmlDescription("StackDrive - Threat info level scope").setTags(TAG)
-                .setType(RuleType.VULNERABILITY).setSeverity(Severity.INFO);
+        for (ProblemRule rule : ProblemRule.values()) {
+            repository.createRule(rule.getKey())
+                    .setName("StackDrive - " + rule.getKey())
+                    .setHtmlDescription("StackDrive - " + rule.getKey()).setTags(TAG)
+                    .setType(RuleType.valueOf(rule.getType())).setSeverity(rule.getSeverity());
+        }
 
         repository.done();
     }
-}
\ No newline at end of file
+
+    static RuleKey key(ProblemRule rule) {
+        return RuleKey.of(REPOSITORY, rule.getKey());
+    }
+}
@@ -19,39 +19,65 @@
 package org.stackdrive.sonarqube;
 
 import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
-import com.google.gson.reflect.TypeToken;
-import org.stackdrive.report.model.SectionDTO;
-import org.stackdrive.report.model.SolutionDTO;
-import org.stackdrive.report.model.tabbed.TabPane;
-import org.stackdrive.report.model.tabbed.Tabbed;
-import org.stackdrive.report.model.views.table.DataTable;
-import org.stackdrive.report.model.views.table.TableRow;
+import org.stackdrive.sonarqube.audit.AuditLedger;
+import org.stackdrive.sonarqube.audit.CheckListState;
 import org.stackdrive.sonarqube.audit.EventCode;
+import org.stackdrive.sonarqube.audit.IdempotencyKey;
 import org.stackdrive.sonarqube.audit.StackDriveLogService;
+import org.stackdrive.sonarqube.concurrent.IoExecutors;
+import org.stackdrive.sonarqube.concurrent.TimeBudget;
+import org.stackdrive.sonarqube.git.AddedLines;
+import org.stackdrive.sonarqube.git.ChangedFiles;
+import org.stackdrive.sonarqube.git.GitBlamer;
 import org.stackdrive.sonarqube.git.GitService;
 import org.stackdrive.sonarqube.git.LastCommitInfo;
+import org.stackdrive.sonarqube.issue.ElementLocator;
+import org.stackdrive.sonarqube.issue.IssueClusterer;
+import org.stackdrive.sonarqube.issue.IssueSelector;
 import org.stackdrive.sonarqube.jacoco.CoverageReport;
+import org.stackdrive.sonarqube.jacoco.DirectoryListingCache;
 import org.stackdrive.sonarqube.jacoco.JacocoReportImporter;
+import org.stackdrive.sonarqube.jacoco.ReportPathsProvider;
+import org.stackdrive.sonarqube.log.LogLimiter;
+import org.stackdrive.sonarqube.log.Phase;
+import org.stackdrive.sonarqube.log.PluginLogger;
 import org.stackdrive.sonarqube.model.*;
+import org.stackdrive.sonarqube.properties.StackDriveSettings;
+import org.stackdrive.sonarqube.report.LimitingInputStream;
+import org.stackdrive.sonarqube.report.ParseLimitExceededException;
+import org.stackdrive.sonarqube.report.ParseLimits;
+import org.stackdrive.sonarqube.report.ProblemStore;
+import org.stackdrive.sonarqube.report.ReportStreamReader;
+import org.stackdrive.sonarqube.report.RiskTables;
+import org.stackdrive.sonarqube.report.Shard;
+import org.stackdrive.sonarqube.report.TabRouter;
 import org.sonar.api.batch.fs.FilePredicate;
 import org.sonar.api.batch.fs.FileSystem;
 import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.fs.TextRange;
 import org.sonar.api.batch.sensor.Sensor;
 import org.sonar.api.batch.sensor.SensorContext;
 import org.sonar.api.batch.sensor.SensorDescriptor;
 import org.sonar.api.batch.sensor.issue.NewIssue;
 import org.sonar.api.batch.sensor.issue.NewIssueLocation;
 import org.sonar.api.rule.RuleKey;
-import org.sonar.api.utils.log.Logger;
-import org.sonar.api.utils.log.Loggers;
 
+import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * Sensor checks <b>stackdrive_solution.json</b> files. Takes all bugs and put's them to sonar qube report
@@ -61,7 +87,9 @@ public class StackDriveSensor implements Sensor {
     /**
      * The logger object for the sensor.
      */
-    private static final Logger LOGGER = Loggers.get(StackDriveSensor.class);
+    private static final PluginLogger LOGGER = PluginLogger.get(StackDriveSensor.class);
+
+    private static final LogLimiter BLAME_FAILURES = new LogLimiter(10, 60_000);
 
     private static final String STACKDRIVE_DIR = ".stackdrive";
 
@@ -69,6 +97,20 @@ public class StackDriveSensor implements Sensor {
 
     private static final String STACKDRIVE_CONFIG = "stackdrive.properties";
 
+    private static final String AUDIT_LEDGER = "audit.ledger";
+
+    private static final String CHECKLIST_STATE = "checklist.state";
+
+    private static final Gson REPORT_GSON = ReportTypeAdapters.create();
+
+    private static final String PROJECT = "project";
+
+    private static final String SOURCES = "sonar.sources";
+
+    private static final String DEFAULT_SOURCES = "src/main/java";
+
+    private static final String ISSUES = "issues";
+
     private static final String BITBUCKET_REPO = "bitbucketRepo";
 
     private static final String COMMIT_HASH = "commitHash";
@@ -77,9 +119,12 @@ public class StackDriveSensor implements Sensor {
 
     private final GitService gitService;
 
-    public StackDriveSensor() {
-        this.logService = new StackDriveLogService();
-        this.gitService = new GitService();
+    private final DirectoryListingCache listingCache;
+
+    public StackDriveSensor(StackDriveLogService logService, GitService gitService, DirectoryListingCache listingCache) {
+        this.logService = logService;
+        this.gitService = gitService;
+        this.listingCache = listingCache;
     }
 
     @Override
@@ -91,237 +136,298 @@ public class StackDriveSensor implements Sensor {
 
     @Override
     public void execute(SensorContext sensorContext) {
+        // Invalid settings fail the analysis
+        StackDriveSettings settings = StackDriveSettings.from(sensorContext.config());
+        final Shard shard = settings.getShard();
+        final String module = sensorContext.module().key();
+        if (!shard.owns(module)) {
+            LOGGER.info("StackDrive - Module {} belongs to another shard than {}, skipped", module, shard);
+            return;
+        }
+        final TimeBudget budget = TimeBudget.of(TimeUnit.SECONDS.toMillis(settings.getTimeBudget()));
+        ExecutorService ioExecutor = IoExecutors.newExecutor("stackdrive-io", settings.getIoThreads());
         try {
             FileSystem fs = sensorContext.fileSystem();
-            if (gitService.supports(fs.baseDir())) {
-                LastCommitInfo lastCommitInfo = gitService.getLastCommitInfo(fs.baseDir());
-                sendValidationPresented(lastCommitInfo);
-                LOGGER.info("StackDrive - Last commit info {} {} {} {}", lastCommitInfo.getLastAuthor(), lastCommitInfo.getRepoName(), lastCommitInfo.getBitbucketRepo(), lastCommitInfo.getHash());
-
-                sendCodeReview(sensorContext, lastCommitInfo);
-                sendValidationVerified(sensorContext, lastCommitInfo);
-            }
-
-            Path reportFile = getFilePath(sensorContext, STACKDRIVE_REPORT);
+            final List<Path> sourceDirs = getSourceDirs(sensorContext);
+            final ChangedFiles changedFiles = this.getChangedFiles(sensorContext, settings, sourceDirs);
+            final AuditLedger ledger = this.getAuditLedger(sensorContext, settings);
+            // Git lookup, coverage import and audit events run while the report is parsed,
+            // the sensor context is only read here, on the sensor thread
+            final File baseDir = fs.baseDir();
+            final Path configFile = getFilePath(sensorContext, settings, STACKDRIVE_CONFIG);
+            final ReportPathsProvider coverageReports = new ReportPathsProvider(sensorContext, listingCache);
+            Future<LastCommitInfo> gitEvents = ioExecutor.submit(() -> this.sendGitEvents(baseDir, module, configFile, coverageReports,
+                    sourceDirs, settings, changedFiles, ledger, budget));
+
+            Path reportFile = getFilePath(sensorContext, settings, STACKDRIVE_REPORT);
             LOGGER.info("Report file exists? {}", Files.exists(reportFile));
             if (Files.exists(reportFile)) {
-                ParsingResult parsingResult = new ParsingResult();
-                try {
-                    this.loadJson(reportFile.toFile(), parsingResult);
-                } catch (Exception e) {
-                    LOGGER.warn("Can't parse JSON", e);
-                }
-                LOGGER.info("Загружен файл '{}' с отчётом о валидации проекта", STACKDRIVE_REPORT);
-                setIssuesOnFile(sensorContext, parsingResult.getProblemList());
-
-                if (Objects.nonNull(parsingResult.getTrashyList()) && !parsingResult.getTrashyList().isEmpty()) {
-                    if (gitService.supports(fs.baseDir())) {
-                        LastCommitInfo lastCommitInfo = gitService.getLastCommitInfo(fs.baseDir());
-                        sendCheckList(parsingResult.getTrashyList(), lastCommitInfo);
+                try (ProblemStore problemStore = new ProblemStore(settings.getMemoryBudget(), fs.workDir().toPath())) {
+                    ParsingResult parsingResult = new ParsingResult(problemStore);
+                    try {
+                        this.loadJson(reportFile.toFile(), parsingResult, settings.getParseLimits(), changedFiles, budget, fs.workDir().toPath());
+                    } catch (ParseLimitExceededException e) {
+                        parsingResult.setComplete(false);
+                        LOGGER.warn("StackDrive - Parsing of '{}' stopped, {}. Only problems read so far are reported", reportFile, e.getMessage());
+                    } catch (Exception e) {
+                        parsingResult.setComplete(false);
+                        LOGGER.warn("Can't parse JSON", e);
+                    }
+                    LOGGER.info("Загружен файл '{}' с отчётом о валидации проекта", STACKDRIVE_REPORT);
+                    if (problemStore.isSpilled()) {
+                        LOGGER.info("StackDrive - {} problems exceeded the memory budget, spilled to disk", problemStore.size());
+                    }
+                    setIssuesOnFile(sensorContext, settings, ioExecutor, problemStore, changedFiles, budget);
+
+                    if (Objects.nonNull(parsingResult.getTrashyList()) && !parsingResult.getTrashyList().isEmpty()) {
+                        LastCommitInfo lastCommitInfo = awaitGitEvents(gitEvents, budget);
+                        if (lastCommitInfo != null) {
+                            Path stateFile = settings.isCheckListDelta() ? getStateFile(sensorContext, settings, CHECKLIST_STATE) : null;
+                            if (stateFile != null && !parsingResult.isComplete()) {
+                                // Validators left unread would be sent as removed
+                                LOGGER.warn("StackDrive - Check list is read partially, its changes are sent by the next complete analysis");
+                            } else {
+                                sendCheckList(parsingResult.getTrashyList(), lastCommitInfo, module, ledger, stateFile, budget);
+                            }
+                        }
                     }
                 }
             } else {
                 LOGGER.info("Не обнаружен файл '{}' с отчётом о валидации проекта", STACKDRIVE_REPORT);
             }
+            awaitGitEvents(gitEvents, budget);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOGGER.warn("StackDriveSensor execute interrupted", e);
         } catch (Exception e) {
             LOGGER.warn("StackDriveSensor execute fail", e);
+        } finally {
+            if (budget.isExpired()) {
+                ioExecutor.shutdownNow();
+            } else {
+                ioExecutor.shutdown();
+            }
+            if (!budget.getSkipped().isEmpty()) {
+                LOGGER.warn("StackDrive - Time budget of {} s is spent, skipped {}", settings.getTimeBudget(), budget.getSkipped());
+            }
         }
     }
 
     /**
-     * Loads json file
+     * Waits for the git events within the time budget, they are cancelled once it's spent
      *
-     * @param jsonFile
-     * @param parsingResult
+     * @return last commit, {@code null} when it's unknown
      */
-    private void loadJson(File jsonFile, ParsingResult parsingResult) {
-        SolutionDTO root = loadReport(jsonFile);
-        if (root == null) {
-            return;
-        }
-        Map<String, SectionDTO> sectionList = root.getSectionList();
-        SectionDTO section = sectionList.get("Risks");
-        if (section == null) {
-            return;
+    private LastCommitInfo awaitGitEvents(Future<LastCommitInfo> gitEvents, TimeBudget budget) throws InterruptedException {
+        try {
+            return gitEvents.get(budget.remainingMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            if (gitEvents.cancel(true)) {
+                budget.skip("git events", 1);
+            }
+        } catch (CancellationException e) {
+            // Already given up
+        } catch (ExecutionException e) {
+            LOGGER.warn("StackDrive - Git events failed", e.getCause());
         }
-        List<Tabbed> tabbedList = section.getTabbedList();
-        TabPane bugTable = getBugTable(tabbedList);
-        TabPane threatTable = getThreatTable(tabbedList);
-
-        parsingResult.getProblemList().addAll(this.getProblems(Status.BUG, bugTable));
-        parsingResult.getProblemList().addAll(this.getProblems(Status.THREAT, threatTable));
-
-        TabPane okTable = getOkTable(tabbedList);
-        parsingResult.getTrashyList().addAll(this.getTrashyObjects(okTable));
+        return null;
     }
 
     /**
-     * Parses problems from table
+     * Sends events of the last commit
      *
-     * @param status
-     * @param table
-     * @return
+     * @return last commit, {@code null} outside of a git work tree
      */
-    private List<Problem> getProblems(Status status, TabPane table) {
-        List<Problem> problemList = new ArrayList<>();
-        DataTable tableBody = (DataTable) table.getElement();
-        for (TableRow dataNode : tableBody.getTable()) {
-            String element = dataNode.getCell2();
-            String code = dataNode.getCell1();
-            Problem problem = new Problem(element, status, this.getSeverety(dataNode), code);
-            problemList.add(problem);
+    private LastCommitInfo sendGitEvents(File baseDir, String module, Path configFile, ReportPathsProvider coverageReports,
+                                         List<Path> sourceDirs, StackDriveSettings settings, ChangedFiles changedFiles,
+                                         AuditLedger ledger, TimeBudget budget) {
+        if (!gitService.supports(baseDir)) {
+            return null;
+        }
+        LastCommitInfo lastCommitInfo = gitService.getLastCommitInfo(baseDir);
+        try {
+            sendValidationPresented(lastCommitInfo, module, ledger);
+            LOGGER.info("StackDrive - Last commit info {} {} {} {}", lastCommitInfo.getLastAuthor(), lastCommitInfo.getRepoName(), lastCommitInfo.getBitbucketRepo(), lastCommitInfo.getHash());
+
+            sendCodeReview(baseDir, module, coverageReports, sourceDirs, settings, changedFiles, lastCommitInfo, budget);
+            sendValidationVerified(configFile, module, lastCommitInfo, ledger);
+        } catch (Exception e) {
+            LOGGER.warn("StackDrive - Git events failed", e);
         }
-        return problemList;
+        return lastCommitInfo;
     }
 
     /**
-     * Parses trashy object from table
+     * Loads json file, rows are handled as soon as they are read so that problems read before
+     * a limit is crossed are kept
      *
-     * @param table
-     * @return
+     * @param jsonFile
+     * @param parsingResult
+     * @param limits
+     * @param changedFiles files of problems which are kept, {@code null} for all
+     * @param budget       time budget, parsing stops once it's spent
+     * @param spillDir     directory of table rows read before their tab title
      */
-    private List<TrashyObject> getTrashyObjects(TabPane table) {
-        List<TrashyObject> trashyObjects = new ArrayList<>();
-        DataTable tableBody = (DataTable) table.getElement();
-        for (TableRow dataNode : tableBody.getTable()) {
-            TrashyObject trashyObject = new TrashyObject();
-            final String cell1 = dataNode.getCell1();
-            if (Objects.nonNull(cell1)) {
-                if (cell1.contains("_off")) {
-                    trashyObject.setEnabled(false);
-                    trashyObject.setExceptionCount(0);
-                    trashyObject.setValidationCount(0);
-                } else {
-                    trashyObject.setEnabled(true);
-                }
-            }
-
-            final String cell2 = dataNode.getCell2();
-            if (Objects.nonNull(cell2)) {
-                final String[] split = cell2.split(":");
-                trashyObject.setValidatorCode(split[0]);
+    private void loadJson(File jsonFile, ParsingResult parsingResult, ParseLimits limits, ChangedFiles changedFiles,
+                          TimeBudget budget, Path spillDir) throws IOException {
+        LimitingInputStream input = new LimitingInputStream(Files.newInputStream(jsonFile.toPath()), limits, budget);
+        try (Reader json = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8))) {
+            Set<String> truncated = new ReportStreamReader(REPORT_GSON, limits, spillDir).read(json, this.createRouter(parsingResult, changedFiles), RiskTables.RISKS_SECTION);
+            if (!truncated.isEmpty()) {
+                parsingResult.setComplete(false);
+                LOGGER.warn("StackDrive - Tables {} have more than {} rows, remaining rows are ignored", truncated, limits.getMaxRowsPerTable());
             }
-
-            final String cell4 = dataNode.getCell4();
-            if (Objects.nonNull(cell4)) {
-                trashyObject.setExceptionCount(Integer.parseInt(cell4));
+        } catch (ParseLimitExceededException e) {
+            if (budget.isExpired()) {
+                budget.skip("report bytes", jsonFile.length() - input.getPosition());
             }
+            throw e;
+        }
+    }
 
-            final String cell3 = dataNode.getCell3();
-            if (Objects.nonNull(cell3)) {
-                if (cell3.contains("problem_ok")) {
-                    trashyObject.setValidationCount(trashyObject.getExceptionCount());
-                } else {
-                    trashyObject.setValidationCount(Integer.parseInt(cell3));
-                }
-            }
+    private TabRouter createRouter(ParsingResult parsingResult, ChangedFiles changedFiles) {
+        return new TabRouter()
+                .register(RiskTables.BUG_TAB, row -> this.addProblem(parsingResult, RiskTables.problem(Status.BUG, row), changedFiles))
+                .register(RiskTables.THREAT_TAB, row -> this.addProblem(parsingResult, RiskTables.problem(Status.THREAT, row), changedFiles))
+                .register(RiskTables.OK_TAB, row -> parsingResult.getTrashyList().add(RiskTables.trashyObject(row)));
+    }
 
-            trashyObjects.add(trashyObject);
+    /**
+     * Adds problem, in changed-files mode only problems of changed classes are kept
+     */
+    private void addProblem(ParsingResult parsingResult, Problem problem, ChangedFiles changedFiles) {
+        if (changedFiles == null || changedFiles.classes().contains(problem.clazz())) {
+            parsingResult.getProblemStore().add(problem);
         }
-        return trashyObjects;
     }
 
     /**
-     * Returns severety
+     * Returns files of the module changed since the merge base of the configured revision and HEAD
      *
-     * @param node
-     * @return
+     * @return changed files, {@code null} when every file is analysed
      */
-    private Severety getSeverety(TableRow node) {
-        String img = node.getImageCode();
-        if ("balloon_info".equals(img)) {
-            return Severety.INFO;
-        }
-        if ("balloon_warning".equals(img)) {
-            return Severety.WARNING;
+    private ChangedFiles getChangedFiles(SensorContext context, StackDriveSettings settings, List<Path> sourceDirs) {
+        Optional<String> mergeBase = settings.getMergeBase();
+        File baseDir = context.fileSystem().baseDir();
+        if (!mergeBase.isPresent() || !gitService.supports(baseDir)) {
+            return null;
         }
-        if ("balloon_error".equals(img)) {
-            return Severety.ERROR;
+        ChangedFiles changedFiles = gitService.getChangedFiles(baseDir, mergeBase.get(), sourceDirs);
+        if (changedFiles == null) {
+            LOGGER.warn("StackDrive - Changed-files mode is off, all files are analysed");
+        } else {
+            LOGGER.info("StackDrive - Changed-files mode, {} files changed since the merge base of '{}'", changedFiles.size(), mergeBase.get());
         }
-        return Severety.INFO;
+        return changedFiles;
     }
 
     /**
-     * Find file
-     *
-     * @param context
-     * @param fileName
-     * @return file in base dir or parent dir
+     * Returns source directories of the module, those of sonar.sources or src/main/java
      */
-    private Path getFilePath(SensorContext context, String fileName) {
-        FileSystem fs = context.fileSystem();
-        final Path modulePath = Paths.get(fs.baseDir().getAbsolutePath());
-        final Path defaultPath = Paths.get(modulePath.toString(), STACKDRIVE_DIR, fileName);
-        final Path parentPath = Paths.get(modulePath.getParent().toString(), STACKDRIVE_DIR, fileName);
-        final Path parentOfParentPath = Paths.get(modulePath.getParent().getParent().toString(), STACKDRIVE_DIR, fileName);
-        final Path parentOfParentOfParentPath = Paths.get(modulePath.getParent().getParent().getParent().toString(), STACKDRIVE_DIR, fileName);
-        if (Files.exists(defaultPath)) {
-            return defaultPath;
-        } else if (Files.exists(parentPath)) {
-            return parentPath;
-        } else if (Files.exists(parentOfParentPath)) {
-            return parentOfParentPath;
-        } else if (Files.exists(parentOfParentOfParentPath)) {
-            return parentOfParentOfParentPath;
-        } else {
-            return defaultPath;
+    private static List<Path> getSourceDirs(SensorContext context) {
+        Path baseDir = context.fileSystem().baseDir().toPath();
+        List<Path> sourceDirs = new ArrayList<>();
+        for (String source : context.config().getStringArray(SOURCES)) {
+            Path dir = baseDir.resolve(source.trim());
+            if (!source.trim().isEmpty() && Files.isDirectory(dir)) {
+                sourceDirs.add(dir);
+            }
         }
+        if (sourceDirs.isEmpty()) {
+            sourceDirs.add(baseDir.resolve(DEFAULT_SOURCES));
+        }
+        return sourceDirs;
     }
 
     /**
-     * Loads report
+     * Find file
      *
-     * @param jsonFile
-     * @return
+     * @param context
+     * @param fileName
+     * @return file in explicitly configured dir, or in base dir or parent dir
      */
-    private SolutionDTO loadReport(File jsonFile) {
-        try (final FileReader json = new FileReader(jsonFile)) {
-            final TypeToken<SolutionDTO> requestListTypeToken = new TypeToken<SolutionDTO>() {
-            };
-            final Gson gson = new GsonBuilder().registerTypeAdapter(TabPane.class, new TabPaneDeserializer()).create();
-            return gson.fromJson(json, requestListTypeToken.getType());
-        } catch (Exception e) {
-            LOGGER.warn("loadReport", e);
-            return null;
+    private Path getFilePath(SensorContext context, StackDriveSettings settings, String fileName) {
+        final Path modulePath = context.fileSystem().baseDir().toPath().toAbsolutePath();
+        final Optional<String> reportPath = settings.getReportPath();
+        if (reportPath.isPresent()) {
+            final Path explicitReportPath = modulePath.resolve(reportPath.get());
+            return STACKDRIVE_REPORT.equals(fileName) ? explicitReportPath : explicitReportPath.resolveSibling(fileName);
         }
+        return StackDriveDirectoryResolver.resolve(modulePath, STACKDRIVE_DIR, settings.getSearchDepth()).resolve(fileName);
     }
 
     /**
      * Adds issues on sonar context
      *
      * @param context
-     * @param problems
+     * @param problemStore
+     * @param changedFiles files issues are created on, {@code null} for all
+     * @param budget       time budget, with a limit issues are created from the most severe ones
      */
-    private void setIssuesOnFile(SensorContext context, List<Problem> problems) {
-        try {
+    private void setIssuesOnFile(SensorContext context, StackDriveSettings settings, ExecutorService ioExecutor,
+                                 ProblemStore problemStore, ChangedFiles changedFiles, TimeBudget budget) {
+        try (Phase phase = LOGGER.phase("Issues")) {
             FileSystem fs = context.fileSystem();
             FilePredicate predicateAll = fs.predicates().hasType(InputFile.Type.MAIN);
-            Map<String, List<Problem>> problemMap = new HashMap();
-            for (Problem problem : problems) {
-                List<Problem> pl = problemMap.get(problem.clazz());
-                if (pl == null) {
-                    pl = new ArrayList<>();
-                    problemMap.put(problem.clazz(), pl);
+            if (changedFiles != null) {
+                List<FilePredicate> changed = new ArrayList<>();
+                for (Path file : changedFiles.files()) {
+                    changed.add(fs.predicates().hasAbsolutePath(file.toString()));
                 }
-                pl.add(problem);
+                predicateAll = changed.isEmpty() ? fs.predicates().none() : fs.predicates().and(predicateAll, fs.predicates().or(changed));
             }
-            // Adds file problems
+            Map<String, List<InputFile>> fileMap = new HashMap<>();
             for (InputFile f : fs.inputFiles(predicateAll)) {
                 String name = f.filename().substring(0, f.filename().length() - 5);
-                LOGGER.info("File " + name);
-                List<Problem> pl = problemMap.get(name);
-                if (pl != null) {
-                    for (Problem problem : pl) {
-                        this.createIssue(context, f, problem);
-                    }
-                }
+                LOGGER.trace("StackDrive - File {}", name);
+                phase.count("files");
+                fileMap.computeIfAbsent(name, key -> new ArrayList<>(1)).add(f);
             }
-            // Adds project problems
-            List<Problem> pl = problemMap.get("project");
-            if (pl != null) {
-                for (Problem problem : pl) {
-                    this.createIssue(context, null, problem);
+            final int maxIssues = settings.getMaxIssues();
+            final int maxIssuesPerFile = settings.getMaxIssuesPerFile();
+            final int maxLocations = settings.getClusterMaxLocations();
+            final IssueLocations locations = new IssueLocations(new ElementLocator(settings.getLocatorCacheSize()),
+                    settings.isBlame() ? this.blame(context, settings, ioExecutor, fileMap, problemStore.classes(), budget) : Collections.emptyMap());
+            IssueClusterer<InputFile, RuleKey> clusterer = new IssueClusterer<>(this::getRuleForProblem, (f, rule, problems) -> {
+                if (budget.isExpired()) {
+                    budget.skip(ISSUES, problems.size());
+                } else {
+                    this.createClusterIssue(context, locations, f, rule, problems, maxLocations);
+                    phase.count(ISSUES);
+                }
+            });
+            IssueSelector<InputFile> selector = new IssueSelector<>(maxIssues, maxIssuesPerFile, (f, problem) -> {
+                if (budget.isExpired()) {
+                    budget.skip(ISSUES, 1);
+                } else if (settings.isClusterIssues()) {
+                    clusterer.accept(f, problem);
+                } else {
+                    this.createIssue(context, locations, f, problem);
+                    phase.count(ISSUES);
                 }
+            });
+            // With a time budget problems are read once per severety, so that the most severe issues are created first
+            List<Severety> passes = budget.isLimited()
+                    ? Arrays.asList(Severety.ERROR, Severety.WARNING, Severety.INFO)
+                    : Collections.<Severety>singletonList(null);
+            for (Severety severety : passes) {
+                problemStore.forEachClass((clazz, pl) -> {
+                    // Adds file problems
+                    for (InputFile f : fileMap.getOrDefault(clazz, Collections.emptyList())) {
+                        selector.offer(f, pl, severety);
+                    }
+                    // Adds project problems
+                    if (PROJECT.equals(clazz)) {
+                        selector.offer(null, pl, severety);
+                    }
+                });
+                clusterer.flush();
+            }
+            selector.flush();
+            clusterer.flush();
+            phase.add("suppressed", selector.getSuppressed());
+            if (selector.getSuppressed() > 0) {
+                this.createSuppressedIssue(context, selector.getSuppressed(), maxIssues, maxIssuesPerFile);
             }
         } catch (Exception e) {
             LOGGER.warn("failed to add issues on sonar context", e);
@@ -329,109 +435,141 @@ public class StackDriveSensor implements Sensor {
     }
 
     /**
-     * Creates issue by specified problem
+     * Blames files having problems in parallel, as many at once as there are I/O threads.
+     * Virtual threads of Java 21 are not bounded, the blamer is
      *
-     * @param problem
+     * @return authors by line of blamed files
      */
-    private void createIssue(SensorContext context, InputFile f, Problem problem) {
-        if (problem.isProjectProblem()) {
-            NewIssue issue = context.newIssue().forRule(this.getRuleForProblem(problem));
-            NewIssueLocation primaryLocation = issue.newLocation()
-                    .on(context.module())
-                    .message(problem.getMessage());
-            issue.at(primaryLocation);
-            issue.save();
-        } else if (f.lines() <= problem.line()) {
-            NewIssue issue = context.newIssue().forRule(this.getRuleForProblem(problem));
-            NewIssueLocation primaryLocation = issue.newLocation()
-                    .on(f)
-                    .at(f.selectLine(problem.line()))
-                    .message(problem.getMessage());
-            issue.at(primaryLocation);
-            issue.save();
+    private Map<InputFile, String[]> blame(SensorContext context, StackDriveSettings settings, ExecutorService ioExecutor,
+                                           Map<String, List<InputFile>> fileMap, Set<String> classes, TimeBudget budget) {
+        File baseDir = context.fileSystem().baseDir();
+        Map<InputFile, String[]> authors = new HashMap<>();
+        if (!gitService.supports(baseDir)) {
+            return authors;
+        }
+        Map<InputFile, Future<String[]>> blames = new LinkedHashMap<>();
+        try (GitBlamer blamer = gitService.openBlamer(baseDir, settings.getBlameCacheDir(), settings.getIoThreads())) {
+            for (String clazz : classes) {
+                for (InputFile f : fileMap.getOrDefault(clazz, Collections.emptyList())) {
+                    Path path = Paths.get(f.uri());
+                    blames.put(f, ioExecutor.submit(() -> blamer.blame(path)));
+                }
+            }
+            for (Map.Entry<InputFile, Future<String[]>> blame : blames.entrySet()) {
+                try {
+                    String[] fileAuthors = blame.getValue().get(budget.remainingMillis(), TimeUnit.MILLISECONDS);
+                    if (fileAuthors != null) {
+                        authors.put(blame.getKey(), fileAuthors);
+                    }
+                } catch (ExecutionException e) {
+                    LOGGER.debug(BLAME_FAILURES, "StackDrive - Can't blame {}: {}", blame.getKey(), e.getCause().getMessage());
+                } catch (TimeoutException e) {
+                    blame.getValue().cancel(true);
+                    budget.skip("blamed files", 1);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            blames.values().forEach(blame -> blame.cancel(true));
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warn("StackDrive - Blame failed", e);
         }
+        LOGGER.info("StackDrive - Blamed {} of {} files with problems", authors.size(), blames.size());
+        return authors;
     }
 
     /**
-     * Returns rule for problem
+     * Creates issue by specified problem
      *
      * @param problem
-     * @return
      */
-    private RuleKey getRuleForProblem(Problem problem) {
-        if (problem.getStatus() == Status.BUG && problem.getSeverety() == Severety.ERROR) {
-            return StackDriveRuleDefinition.BUG_ERROR;
-        }
-        if (problem.getStatus() == Status.BUG && problem.getSeverety() == Severety.WARNING) {
-            return StackDriveRuleDefinition.BUG_WARNING;
-        }
-        if (problem.getStatus() == Status.BUG && problem.getSeverety() == Severety.INFO) {
-            return StackDriveRuleDefinition.BUG_INFO;
-        }
-        if (problem.getStatus() == Status.THREAT && problem.getSeverety() == Severety.ERROR) {
-            return StackDriveRuleDefinition.THREAT_ERROR;
-        }
-        if (problem.getStatus() == Status.THREAT && problem.getSeverety() == Severety.WARNING) {
-            return StackDriveRuleDefinition.THREAT_WARNING;
-        }
-        if (problem.getStatus() == Status.THREAT && problem.getSeverety() == Severety.INFO) {
-            return StackDriveRuleDefinition.THREAT_INFO;
-        }
-        return StackDriveRuleDefinition.THREAT_INFO;
+    private void createIssue(SensorContext context, IssueLocations locations, InputFile f, Problem problem) {
+        NewIssue issue = context.newIssue().forRule(this.getRuleForProblem(problem));
+        NewIssueLocation primaryLocation = problem.isProjectProblem() || f == null
+                ? issue.newLocation().on(context.module()).message(problem.getMessage())
+                : locations.on(issue, f, problem, problem.getMessage());
+        issue.at(primaryLocation);
+        issue.save();
     }
 
-    private TabPane getBugTable(List<Tabbed> tabbedList) {
-        for (Tabbed tabbed : tabbedList) {
-            final List<TabPane> tabPaneList = tabbed.getTabPaneList();
-            TabPane bugTable = tabPaneList.stream()
-                    .filter(tabPane -> "list_bug".equals(tabPane.getTitle()))
-                    .findAny()
-                    .orElse(null);
-            if (Objects.nonNull(bugTable)) {
-                return bugTable;
+    /**
+     * Creates one issue for problems of a file with the same rule, occurrences after the first one
+     * become secondary locations
+     *
+     * @param maxLocations maximum number of secondary locations
+     */
+    private void createClusterIssue(SensorContext context, IssueLocations locations, InputFile f, RuleKey rule,
+                                    List<Problem> problems, int maxLocations) {
+        Problem first = problems.get(0);
+        String message = problems.size() > 1
+                ? first.getMessage() + " (" + problems.size() + " occurrences)"
+                : first.getMessage();
+        NewIssue issue = context.newIssue().forRule(rule);
+        if (first.isProjectProblem() || f == null) {
+            issue.at(issue.newLocation().on(context.module()).message(message));
+        } else {
+            issue.at(locations.on(issue, f, first, message));
+            for (Problem problem : problems.subList(1, Math.min(problems.size(), maxLocations + 1))) {
+                issue.addLocation(locations.on(issue, f, problem, problem.getMessage()));
             }
         }
-        return null;
+        issue.save();
     }
 
-    private TabPane getThreatTable(List<Tabbed> tabbedList) {
-        for (Tabbed tabbed : tabbedList) {
-            final List<TabPane> tabPaneList = tabbed.getTabPaneList();
-            TabPane threatTable = tabPaneList.stream()
-                    .filter(tabPane -> "list_threat".equals(tabPane.getTitle()))
-                    .findAny()
-                    .orElse(null);
-            if (Objects.nonNull(threatTable)) {
-                return threatTable;
-            }
-        }
-        return null;
+    /**
+     * Creates module issue telling how many problems were left out by the issue limits
+     */
+    private void createSuppressedIssue(SensorContext context, long suppressed, int maxIssues, int maxIssuesPerFile) {
+        LOGGER.warn("StackDrive - {} problems exceed the issue limits ({} per module, {} per file) and are not reported",
+                suppressed, maxIssues, maxIssuesPerFile);
+        NewIssue issue = context.newIssue().forRule(StackDriveRuleDefinition.BUG_INFO);
+        NewIssueLocation primaryLocation = issue.newLocation()
+                .on(context.module())
+                .message("StackDrive - " + suppressed + " less severe problems are not reported because of the issue limits ("
+                        + StackDriveSettings.MAX_ISSUES + "=" + maxIssues + ", " + StackDriveSettings.MAX_ISSUES_PER_FILE + "=" + maxIssuesPerFile + ")");
+        issue.at(primaryLocation);
+        issue.save();
     }
 
-    private TabPane getOkTable(List<Tabbed> tabbedList) {
-        for (Tabbed tabbed : tabbedList) {
-            final List<TabPane> tabPaneList = tabbed.getTabPaneList();
-            TabPane threatTable = tabPaneList.stream()
-                    .filter(tabPane -> "list_ok".equals(tabPane.getTitle()))
-                    .findAny()
-                    .orElse(null);
-            if (Objects.nonNull(threatTable)) {
-                return threatTable;
-            }
-        }
-        return null;
+    /**
+     * Returns rule for problem
+     *
+     * @param problem
+     * @return
+     */
+    private RuleKey getRuleForProblem(Problem problem) {
+        return StackDriveRuleDefinition.key(ProblemRule.of(problem));
     }
 
-    private void sendCodeReview(SensorContext sensorContext, LastCommitInfo lastCommitInfo) {
+    private void sendCodeReview(File baseDir, String module, ReportPathsProvider coverageReports, List<Path> sourceDirs,
+                                StackDriveSettings settings, ChangedFiles changedFiles, LastCommitInfo lastCommitInfo, TimeBudget budget) {
         try {
-            JacocoReportImporter jacocoReportImporter = new JacocoReportImporter();
-            final CoverageReport report = jacocoReportImporter.analyse(sensorContext);
+            final AddedLines addedLines = gitService.getAddedLines(baseDir, settings.getMergeBase().orElse(null), sourceDirs);
+            JacocoReportImporter jacocoReportImporter = new JacocoReportImporter(settings.getJacocoThreads(), settings.getIoThreads(),
+                    changedFiles == null ? null : changedFiles::containsSource, addedLines == null ? null : addedLines::ranges, budget);
+            final CoverageReport report = jacocoReportImporter.analyse(coverageReports);
+            if (budget.isExpired()) {
+                // Coverage of a partial import would be wrong
+                budget.skip("code review events", 1);
+                return;
+            }
 
             Map<String, Object> extension = new HashMap<>();
             extension.put("all_code", report.getAll());
-            extension.put("module", (extractModule(sensorContext.module().key())).toLowerCase());
-            extension.put("module_key", sensorContext.module().key());
-            extension.put("module_full", (lastCommitInfo.getRepoName() + ":" + extractModule(sensorContext.module().key())).toLowerCase());
+            if (changedFiles != null) {
+                extension.put("changed_files", changedFiles.size());
+            }
+            final CoverageReport newCode = report.getNewCode();
+            if (newCode != null) {
+                extension.put("new_code", newCode.getAll());
+                extension.put("new_code_covered", newCode.getCovered());
+                extension.put("new_code_missed", newCode.getMissed());
+                LOGGER.info("StackDrive - New code coverage: {} added lines in {} files, covered {} missed {}",
+                        addedLines.getLines(), addedLines.getFiles(), newCode.getCovered(), newCode.getMissed());
+            }
+            extension.put("module", (extractModule(module)).toLowerCase());
+            extension.put("module_key", module);
+            extension.put("module_full", (lastCommitInfo.getRepoName() + ":" + extractModule(module)).toLowerCase());
 
             logService.sendLog(EventCode.CODE_REVIEW_EVENT, lastCommitInfo.getRepoName(), lastCommitInfo.getLastAuthor(), extension);
             LOGGER.info("StackDrive - Code review report send, all {}", report.getAll());
@@ -440,38 +578,145 @@ public class StackDriveSensor implements Sensor {
         }
     }
 
-    private void sendValidationPresented(LastCommitInfo lastCommitInfo) {
+    private void sendValidationPresented(LastCommitInfo lastCommitInfo, String module, AuditLedger ledger) {
         Map<String, Object> cle = new HashMap<>();
         cle.put(BITBUCKET_REPO, lastCommitInfo.getBitbucketRepo());
         cle.put(COMMIT_HASH, lastCommitInfo.getHash());
-        logService.sendLog(EventCode.VALIDATION_PRESENTED, lastCommitInfo.getRepoName(), lastCommitInfo.getLastAuthor(), cle);
+        logService.sendLog(EventCode.VALIDATION_PRESENTED, lastCommitInfo.getRepoName(), lastCommitInfo.getLastAuthor(), cle,
+                eventKey(EventCode.VALIDATION_PRESENTED, lastCommitInfo, module), ledger);
     }
 
-    private void sendValidationVerified(SensorContext sensorContext, LastCommitInfo lastCommitInfo) {
-        Path configFile = getFilePath(sensorContext, STACKDRIVE_CONFIG);
+    private void sendValidationVerified(Path configFile, String module, LastCommitInfo lastCommitInfo, AuditLedger ledger) {
         if (Files.exists(configFile)) {
             Map<String, Object> cle = new HashMap<>();
             cle.put(BITBUCKET_REPO, lastCommitInfo.getBitbucketRepo());
             cle.put(COMMIT_HASH, lastCommitInfo.getHash());
-            logService.sendLog(EventCode.VALIDATION_VERIFIED, lastCommitInfo.getRepoName(), lastCommitInfo.getLastAuthor(), cle);
+            logService.sendLog(EventCode.VALIDATION_VERIFIED, lastCommitInfo.getRepoName(), lastCommitInfo.getLastAuthor(), cle,
+                    eventKey(EventCode.VALIDATION_VERIFIED, lastCommitInfo, module), ledger);
             LOGGER.info("StackDrive - Config file exists {}", configFile);
         }
     }
 
-    private void sendCheckList(List<TrashyObject> problemList, LastCommitInfo lastCommitInfo) {
+    /**
+     * Sends check list, with a state file only validators added, removed or changed since the previous analysis
+     * and a checksum of all of them
+     *
+     * @param stateFile counts of the previous analysis, {@code null} to send every validator
+     * @param budget    time budget, events left once it's spent aren't sent
+     */
+    private void sendCheckList(List<TrashyObject> problemList, LastCommitInfo lastCommitInfo, String module, AuditLedger ledger,
+                               Path stateFile, TimeBudget budget) {
         final long runUID = UUID.randomUUID().getMostSignificantBits() & Long.MAX_VALUE;
+        if (stateFile == null) {
+            for (TrashyObject trashyObject : problemList) {
+                sendCheckListEvent(lastCommitInfo, module, ledger, runUID, trashyObject.getValidatorCode(), null,
+                        new CheckListState.Counts(trashyObject.getValidationCount(), trashyObject.getExceptionCount()), null, budget);
+            }
+            return;
+        }
+        CheckListState state = CheckListState.load(stateFile);
+        Map<String, CheckListState.Counts> previous = state.get(lastCommitInfo.getRepoName(), module);
+        Map<String, CheckListState.Counts> current = new TreeMap<>();
         for (TrashyObject trashyObject : problemList) {
-            Map<String, Object> cle = new HashMap<>();
-            cle.put(BITBUCKET_REPO, lastCommitInfo.getBitbucketRepo());
-            cle.put(COMMIT_HASH, lastCommitInfo.getHash());
-            cle.put("serviceCode", lastCommitInfo.getRepoName());
-            cle.put("isEnabled", trashyObject.getValidatorCode());
-            cle.put("validatorCode", trashyObject.getValidatorCode());
-            cle.put("validationCount", trashyObject.getValidationCount());
-            cle.put("exceptionCount", trashyObject.getExceptionCount());
-            cle.put("runUID", runUID);
-            logService.sendLog(EventCode.CHECK_LIST_EVENT, lastCommitInfo.getRepoName(), lastCommitInfo.getLastAuthor(), cle);
+            if (trashyObject.getValidatorCode() != null) {
+                current.put(trashyObject.getValidatorCode(),
+                        new CheckListState.Counts(trashyObject.getValidationCount(), trashyObject.getExceptionCount()));
+            }
+        }
+        int sent = 0;
+        boolean complete = true;
+        for (Map.Entry<String, CheckListState.Counts> validator : current.entrySet()) {
+            CheckListState.Counts counts = previous.get(validator.getKey());
+            if (!validator.getValue().equals(counts)) {
+                complete &= sendCheckListEvent(lastCommitInfo, module, ledger, runUID, validator.getKey(), counts, validator.getValue(),
+                        counts == null ? "ADDED" : "CHANGED", budget);
+                sent++;
+            }
+        }
+        for (String validatorCode : previous.keySet()) {
+            if (!current.containsKey(validatorCode)) {
+                complete &= sendCheckListEvent(lastCommitInfo, module, ledger, runUID, validatorCode, previous.get(validatorCode),
+                        new CheckListState.Counts(0, 0), "REMOVED", budget);
+                sent++;
+            }
+        }
+        if (!complete) {
+            // The state is kept, so that deltas left out are sent by the next analysis
+            budget.skip("check list checksums", 1);
+            return;
+        }
+        Map<String, Object> cle = new HashMap<>();
+        cle.put(BITBUCKET_REPO, lastCommitInfo.getBitbucketRepo());
+        cle.put(COMMIT_HASH, lastCommitInfo.getHash());
+        cle.put("serviceCode", lastCommitInfo.getRepoName());
+        cle.put("validatorCount", current.size());
+        String checksum = CheckListState.checksum(current);
+        cle.put("checksum", checksum);
+        cle.put("runUID", runUID);
+        logService.sendLog(EventCode.CHECK_LIST_CHECKSUM, lastCommitInfo.getRepoName(), lastCommitInfo.getLastAuthor(), cle,
+                eventKey(EventCode.CHECK_LIST_CHECKSUM, lastCommitInfo, module, CheckListState.checksum(previous), checksum), ledger);
+        state.put(lastCommitInfo.getRepoName(), module, current);
+        state.save();
+        LOGGER.info("StackDrive - Check list: {} of {} validators changed", sent, current.size());
+    }
+
+    /**
+     * @param previous counts of the previous analysis in delta mode, {@code null} otherwise or for an added validator
+     * @param change   ADDED, CHANGED or REMOVED in delta mode, {@code null} otherwise
+     * @return false when the event isn't sent because the time budget is spent
+     */
+    private boolean sendCheckListEvent(LastCommitInfo lastCommitInfo, String module, AuditLedger ledger, long runUID,
+                                       String validatorCode, CheckListState.Counts previous, CheckListState.Counts counts,
+                                       String change, TimeBudget budget) {
+        if (budget.isExpired()) {
+            budget.skip("check list events", 1);
+            return false;
         }
+        Map<String, Object> cle = new HashMap<>();
+        cle.put(BITBUCKET_REPO, lastCommitInfo.getBitbucketRepo());
+        cle.put(COMMIT_HASH, lastCommitInfo.getHash());
+        cle.put("serviceCode", lastCommitInfo.getRepoName());
+        cle.put("isEnabled", validatorCode);
+        cle.put("validatorCode", validatorCode);
+        cle.put("validationCount", counts.getValidationCount());
+        cle.put("exceptionCount", counts.getExceptionCount());
+        cle.put("runUID", runUID);
+        if (change != null) {
+            cle.put("change", change);
+        }
+        logService.sendLog(EventCode.CHECK_LIST_EVENT, lastCommitInfo.getRepoName(), lastCommitInfo.getLastAuthor(), cle,
+                eventKey(EventCode.CHECK_LIST_EVENT, lastCommitInfo, module, validatorCode, String.valueOf(previous), counts.toString()), ledger);
+        return true;
+    }
+
+    /**
+     * Key of an event, the same for every run over the same commit sending the same content.
+     * Check list events are keyed by their change too: reanalysing a commit after a newer one
+     * sends changes from the newer state instead of being taken for a repeated run
+     *
+     * @param items validator and counts of a check list event, checksums of a check list checksum, none for other events
+     */
+    private static IdempotencyKey eventKey(String code, LastCommitInfo lastCommitInfo, String module, String... items) {
+        List<String> parts = new ArrayList<>(Arrays.asList(code, lastCommitInfo.getRepoName(), lastCommitInfo.getHash(), module));
+        Collections.addAll(parts, items);
+        return IdempotencyKey.of(parts.toArray(new String[0]));
+    }
+
+    /**
+     * Returns ledger of events sent by previous runs, kept next to the report.
+     * Without a .stackdrive directory events are sent on every run
+     */
+    private AuditLedger getAuditLedger(SensorContext context, StackDriveSettings settings) {
+        Path ledgerFile = getStateFile(context, settings, AUDIT_LEDGER);
+        return ledgerFile != null ? logService.getLedger(ledgerFile) : null;
+    }
+
+    /**
+     * Returns file of state kept between analyses next to the report, {@code null} without a .stackdrive directory
+     */
+    private Path getStateFile(SensorContext context, StackDriveSettings settings, String fileName) {
+        Path file = getFilePath(context, settings, fileName);
+        return Files.isDirectory(file.getParent()) ? file : null;
     }
 
     private String extractModule(String moduleKey) {
@@ -483,4 +728,36 @@ public class StackDriveSensor implements Sensor {
         }
         return "";
     }
-}
\ No newline at end of file
+
+    /**
+     * Locations of problem elements in files, with the author of the located line when files are blamed
+     */
+    private static final class IssueLocations {
+
+        private final ElementLocator locator;
+
+        private final Map<InputFile, String[]> authors;
+
+        IssueLocations(ElementLocator locator, Map<InputFile, String[]> authors) {
+            this.locator = locator;
+            this.authors = authors;
+        }
+
+        /**
+         * Returns location of the problem element, the whole file when it can not be resolved
+         */
+        NewIssueLocation on(NewIssue issue, InputFile f, Problem problem, String message) {
+            NewIssueLocation location = issue.newLocation().on(f);
+            TextRange range = locator.locate(f, problem);
+            if (range == null) {
+                return location.message(message);
+            }
+            String[] fileAuthors = authors.get(f);
+            int line = range.start().line();
+            if (fileAuthors != null && line <= fileAuthors.length && fileAuthors[line - 1] != null) {
+                message = message + " (author: " + fileAuthors[line - 1] + ")";
+            }
+            return location.at(range).message(message);
+        }
+    }
+}
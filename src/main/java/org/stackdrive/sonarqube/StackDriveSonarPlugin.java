@@ -18,6 +18,10 @@
  */
 package org.stackdrive.sonarqube;
 
+import org.stackdrive.sonarqube.audit.StackDriveLogService;
+import org.stackdrive.sonarqube.git.GitService;
+import org.stackdrive.sonarqube.jacoco.DirectoryListingCache;
+import org.stackdrive.sonarqube.properties.StackDriveSettings;
 import org.sonar.api.Plugin;
 
 /**
@@ -27,6 +31,8 @@ public class StackDriveSonarPlugin implements Plugin {
 
     @Override
     public void define(Context context) {
+        context.addExtensions(StackDriveSettings.definitions());
+        context.addExtensions(StackDriveLogService.class, GitService.class, DirectoryListingCache.class);
         context.addExtensions(StackDriveSensor.class, StackDriveRuleDefinition.class, StackDriveProfileActivator.class);
     }
 }
\ No newline at end of file
@@ -0,0 +1,125 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.stackdrive.sonarqube.audit;
+
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Keys of sent audit events, kept in a file of 8 byte keys appended as events are sent.
+ * When the file grows over {@link #MAX_KEYS} keys, the older half is dropped
+ */
+public final class AuditLedger {
+
+    private static final Logger LOGGER = Loggers.get(AuditLedger.class);
+
+    static final int MAX_KEYS = 1 << 16;
+
+    private final Path file;
+
+    private final Set<Long> keys = new HashSet<>();
+
+    private boolean loaded;
+
+    public AuditLedger(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * Reserves the key of an event about to be sent, so that it isn't sent twice by this run.
+     * The key is recorded in the file by {@link #record(IdempotencyKey)} once the event is handed over,
+     * or given back by {@link #release(IdempotencyKey)} when it couldn't be
+     *
+     * @return false when the event was already sent or is being sent
+     */
+    public synchronized boolean reserve(IdempotencyKey key) {
+        load();
+        return keys.add(key.value());
+    }
+
+    /**
+     * Records the key of a sent event, so that later runs skip it
+     */
+    public synchronized void record(IdempotencyKey key) {
+        try {
+            Files.write(file, ByteBuffer.allocate(Long.BYTES).putLong(key.value()).array(),
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            LOGGER.debug("StackDrive - Can't write audit ledger '{}': {}", file, e.getMessage());
+        }
+    }
+
+    /**
+     * Gives back the key of an event which couldn't be sent, so that it's sent again
+     */
+    public synchronized void release(IdempotencyKey key) {
+        keys.remove(key.value());
+    }
+
+    private void load() {
+        if (loaded) {
+            return;
+        }
+        loaded = true;
+        List<Long> recorded = new ArrayList<>();
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+            // A trailing partial key of an interrupted write is ignored
+            while (buffer.remaining() >= Long.BYTES) {
+                recorded.add(buffer.getLong());
+            }
+        } catch (NoSuchFileException e) {
+            return;
+        } catch (IOException e) {
+            LOGGER.debug("StackDrive - Can't read audit ledger '{}': {}", file, e.getMessage());
+            return;
+        }
+        if (recorded.size() > MAX_KEYS) {
+            recorded = recorded.subList(recorded.size() - MAX_KEYS / 2, recorded.size());
+            rewrite(recorded);
+        }
+        keys.addAll(recorded);
+    }
+
+    private void rewrite(List<Long> recorded) {
+        ByteBuffer buffer = ByteBuffer.allocate(recorded.size() * Long.BYTES);
+        for (long key : recorded) {
+            buffer.putLong(key);
+        }
+        try {
+            Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+            Files.write(temp, buffer.array());
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            LOGGER.debug("StackDrive - Can't compact audit ledger '{}': {}", file, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.stackdrive.sonarqube.audit;
+
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Check list counts sent by the previous analysis, by repository, module and validator.
+ * Kept in a tab separated file, one validator per line
+ */
+public final class CheckListState {
+
+    private static final Logger LOGGER = Loggers.get(CheckListState.class);
+
+    private static final String SEPARATOR = "\t";
+
+    private final Path file;
+
+    /**
+     * Counts by validator by repository and module
+     */
+    private final Map<String, Map<String, Counts>> scopes = new TreeMap<>();
+
+    private CheckListState(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * Reads the state, an unreadable file is taken as no previous analysis
+     */
+    public static CheckListState load(Path file) {
+        CheckListState state = new CheckListState(file);
+        try {
+            for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+                String[] fields = line.split(SEPARATOR, -1);
+                if (fields.length != 5) {
+                    continue;
+                }
+                state.scopes.computeIfAbsent(scope(fields[0], fields[1]), k -> new TreeMap<>())
+                        .put(fields[2], new Counts(Integer.parseInt(fields[3]), Integer.parseInt(fields[4])));
+            }
+        } catch (NoSuchFileException e) {
+            return state;
+        } catch (IOException | NumberFormatException e) {
+            LOGGER.debug("StackDrive - Can't read check list state '{}': {}", file, e.getMessage());
+            state.scopes.clear();
+        }
+        return state;
+    }
+
+    /**
+     * @return counts by validator, sorted by validator
+     */
+    public Map<String, Counts> get(String repo, String module) {
+        Map<String, Counts> counts = scopes.get(scope(repo, module));
+        return counts == null ? Collections.<String, Counts>emptyMap() : Collections.unmodifiableMap(counts);
+    }
+
+    public void put(String repo, String module, Map<String, Counts> counts) {
+        scopes.put(scope(repo, module), new TreeMap<>(counts));
+    }
+
+    /**
+     * Writes the state, a failure only costs a full check list on the next analysis
+     */
+    public void save() {
+        try {
+            Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+            try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                for (Map.Entry<String, Map<String, Counts>> scope : scopes.entrySet()) {
+                    for (Map.Entry<String, Counts> validator : scope.getValue().entrySet()) {
+                        writer.write(scope.getKey() + SEPARATOR + validator.getKey() + SEPARATOR
+                                + validator.getValue().getValidationCount() + SEPARATOR + validator.getValue().getExceptionCount());
+                        writer.newLine();
+                    }
+                }
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            LOGGER.debug("StackDrive - Can't write check list state '{}': {}", file, e.getMessage());
+        }
+    }
+
+    /**
+     * Checksum of all counts, the server compares it with the counts it has assembled from deltas
+     *
+     * @param counts counts by validator
+     */
+    public static String checksum(Map<String, Counts> counts) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (Map.Entry<String, Counts> validator : new TreeMap<>(counts).entrySet()) {
+                digest.update((validator.getKey() + SEPARATOR + validator.getValue().getValidationCount()
+                        + SEPARATOR + validator.getValue().getExceptionCount() + "\n").getBytes(StandardCharsets.UTF_8));
+            }
+            StringBuilder hex = new StringBuilder();
+            for (byte b : digest.digest()) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not supported", e);
+        }
+    }
+
+    private static String scope(String repo, String module) {
+        return repo + SEPARATOR + module;
+    }
+
+    /**
+     * Counts of a validator
+     */
+    public static final class Counts {
+
+        private final int validationCount;
+
+        private final int exceptionCount;
+
+        public Counts(int validationCount, int exceptionCount) {
+            this.validationCount = validationCount;
+            this.exceptionCount = exceptionCount;
+        }
+
+        public int getValidationCount() {
+            return validationCount;
+        }
+
+        public int getExceptionCount() {
+            return exceptionCount;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Counts)) {
+                return false;
+            }
+            Counts counts = (Counts) o;
+            return validationCount == counts.validationCount && exceptionCount == counts.exceptionCount;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * validationCount + exceptionCount;
+        }
+
+        @Override
+        public String toString() {
+            return validationCount + "/" + exceptionCount;
+        }
+    }
+}
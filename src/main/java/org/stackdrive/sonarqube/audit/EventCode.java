@@ -30,6 +30,11 @@ public interface EventCode {
 
     String CHECK_LIST_EVENT = "CheckListEvent";
 
+    /**
+     * Checksum of all check list counts, sent after the changed ones in delta mode
+     */
+    String CHECK_LIST_CHECKSUM = "CheckListChecksum";
+
     String AR_EVENT = "AREvent";
 
     /**
@@ -19,25 +19,61 @@
 package org.stackdrive.sonarqube.audit;
 
 import org.stackdrive.sonarqube.properties.StackDriveProperties;
+import org.stackdrive.sonarqube.properties.StackDriveSettings;
+import org.sonar.api.batch.InstantiationStrategy;
+import org.sonar.api.batch.ScannerSide;
+import org.sonar.api.config.Configuration;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
 import org.stackdrive.audit.dto.AuditDTO;
 import org.stackdrive.audit.dto.Environment;
 import org.stackdrive.audit.logger.StackDriveLogLogger;
 
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Sends audit events, one instance per scanner run. The audit client is created on the first event,
+ * its host is taken from the scanner wide configuration
+ */
+@ScannerSide
+@InstantiationStrategy(InstantiationStrategy.PER_BATCH)
 public class StackDriveLogService {
 
     private static final Logger LOGGER = Loggers.get(StackDriveLogService.class);
 
+    private static final String IDEMPOTENCY_KEY = "idempotencyKey";
+
     private final String buildVersion;
 
-    private final StackDriveLogLogger stackDriveLog;
+    private volatile StackDriveLogLogger stackDriveLog;
+
+    private final String logHost;
 
-    public StackDriveLogService() {
-        StackDriveProperties stackProperties = new StackDriveProperties();
-        this.buildVersion = stackProperties.getBuildVersion();
-        this.stackDriveLog = new StackDriveLogLogger(stackProperties.getLogHost() + "/audit");
-        LOGGER.trace("StackDrive Log Service Url {} ", stackProperties.getLogHost() + "/audit");
+    private final Map<Path, AuditLedger> ledgers = new ConcurrentHashMap<>();
+
+    public StackDriveLogService(Configuration configuration) {
+        this.buildVersion = StackDriveProperties.get().getBuildVersion();
+        this.logHost = StackDriveSettings.from(configuration).getLogHost();
+    }
+
+    private StackDriveLogLogger getStackDriveLog() {
+        StackDriveLogLogger log = stackDriveLog;
+        if (log == null) {
+            synchronized (this) {
+                log = stackDriveLog;
+                if (log == null) {
+                    String url = logHost + "/audit";
+                    log = new StackDriveLogLogger(url);
+                    LOGGER.trace("StackDrive Log Service Url {} ", url);
+                    stackDriveLog = log;
+                }
+            }
+        }
+        return log;
     }
 
     public void sendLog(String code, String repo, String user) {
@@ -50,7 +86,7 @@ public class StackDriveLogService {
         auditDTO.setEnv(Environment.SONARQUBE);
         auditDTO.setVersion(buildVersion);
 
-        stackDriveLog.asyncSend(auditDTO);
+        getStackDriveLog().asyncSend(auditDTO);
         LOGGER.trace("StackDrive sendLog <<< {} {} {}", code, repo, user);
         sendAREventIfNeeded(code, repo, user);
     }
@@ -67,11 +103,59 @@ public class StackDriveLogService {
 
         auditDTO.setExtension(extension);
 
-        stackDriveLog.asyncSend(auditDTO);
+        getStackDriveLog().asyncSend(auditDTO);
         LOGGER.trace("StackDrive sendLog <<< {} {} {}", code, repo, user);
         sendAREventIfNeeded(code, repo, user);
     }
 
+    /**
+     * Sends event unless the ledger tells it was already sent by a previous run, the key is added to the extension.
+     * The key is recorded only once the event is handed over to the audit client
+     *
+     * @param ledger sent events, {@code null} to send anyway
+     */
+    public void sendLog(String code, String repo, String user, Map<String, Object> extension, IdempotencyKey key, AuditLedger ledger) {
+        if (ledger != null && !ledger.reserve(key)) {
+            LOGGER.debug("StackDrive - {} {} was already sent", code, key);
+            return;
+        }
+        Map<String, Object> keyedExtension = new HashMap<>(extension);
+        keyedExtension.put(IDEMPOTENCY_KEY, key.toString());
+        LOGGER.trace("StackDrive sendLog >>> {} {} {}", code, repo, user);
+        AuditDTO auditDTO = new AuditDTO();
+        auditDTO.setCode(code);
+        auditDTO.setLogin(user);
+        auditDTO.setProject(repo);
+
+        auditDTO.setEnv(Environment.SONARQUBE);
+        auditDTO.setVersion(buildVersion);
+
+        auditDTO.setExtension(keyedExtension);
+
+        try {
+            getStackDriveLog().asyncSend(auditDTO);
+        } catch (RuntimeException | Error e) {
+            if (ledger != null) {
+                ledger.release(key);
+            }
+            throw e;
+        }
+        if (ledger != null) {
+            ledger.record(key);
+        }
+        LOGGER.trace("StackDrive sendLog <<< {} {} {}", code, repo, user);
+        if (EventCode.AR_EVENTS.contains(code)) {
+            sendLog(EventCode.AR_EVENT, repo, user, Collections.<String, Object>emptyMap(), key.derive(EventCode.AR_EVENT), ledger);
+        }
+    }
+
+    /**
+     * Returns ledger of the file, shared by modules of the scan
+     */
+    public AuditLedger getLedger(Path file) {
+        return ledgers.computeIfAbsent(file.toAbsolutePath().normalize(), AuditLedger::new);
+    }
+
     /**
      * Отправляет синтетически AREvent
      * <p>
@@ -0,0 +1,467 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.stackdrive.sonarqube.cli;
+
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonWriter;
+import org.stackdrive.sonarqube.ReportTypeAdapters;
+import org.stackdrive.sonarqube.model.Problem;
+import org.stackdrive.sonarqube.model.ProblemRule;
+import org.stackdrive.sonarqube.model.Status;
+import org.stackdrive.sonarqube.report.ParseLimits;
+import org.stackdrive.sonarqube.report.ReportStreamReader;
+import org.stackdrive.sonarqube.report.RiskTables;
+import org.stackdrive.sonarqube.report.TabRouter;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Converts maintenance.json to the generic issue format of SonarQube ({@code sonar.externalIssuesReportPaths}),
+ * for analyses where the plugin can't be installed:
+ * <pre>
+ * java -cp stackdrive-sonarqube.jar:gson.jar:guava.jar:stackdrive-report-model.jar \
+ *     org.stackdrive.sonarqube.cli.GenericIssueConverter maintenance.json issues.json [project dir [source dir...]]
+ * </pre>
+ * The report is streamed and issues are formatted by a pool of threads and written in report order as rows are read,
+ * so heap use depends on the number of source files only. Like the sensor, problems are reported on every main source file
+ * named after their class; project problems and problems without a source file are skipped, since generic issues need a file.
+ * Problems of a method or class are reported on the file, so are problems of a line beyond the end of the file.
+ * <p>
+ * Main sources are the given source dirs relative to the project dir. Without them, java files of the project are taken
+ * except test sources ({@code src/test}) and build output ({@code target} and {@code build} directories outside of {@code src})
+ */
+public final class GenericIssueConverter {
+
+    private static final String ENGINE_ID = "StackDrive";
+
+    private static final String JAVA_EXTENSION = ".java";
+
+    private static final String SOURCE_DIR = "src";
+
+    private static final String TEST_DIR = "test";
+
+    /**
+     * Directories of build output and generated sources outside of {@code src}, not indexed when the source dirs aren't given
+     */
+    private static final Set<String> BUILD_DIRS = new HashSet<>(Arrays.asList("target", "build"));
+
+    /**
+     * Problems formatted by one task
+     */
+    private static final int CHUNK_SIZE = 1024;
+
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private static final Gson REPORT_GSON = ReportTypeAdapters.create();
+
+    private final Path projectDir;
+
+    /**
+     * Source files relative to the project dir by class name
+     */
+    private final Map<String, List<String>> sources;
+
+    private GenericIssueConverter(Path projectDir, Map<String, List<String>> sources) {
+        this.projectDir = projectDir;
+        this.sources = sources;
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 2) {
+            System.err.println("Usage: GenericIssueConverter <maintenance.json> <output.json> [<project dir> [<source dir>...]]");
+            System.exit(2);
+        }
+        Path projectDir = Paths.get(args.length > 2 ? args[2] : ".");
+        List<Path> sourceDirs = new ArrayList<>();
+        for (int i = 3; i < args.length; i++) {
+            sourceDirs.add(projectDir.resolve(args[i]));
+        }
+        long start = System.nanoTime();
+        GenericIssueConverter converter = new GenericIssueConverter(projectDir, indexSources(projectDir, sourceDirs));
+        Summary summary = converter.convert(Paths.get(args[0]), Paths.get(args[1]));
+        System.err.printf("StackDrive - %d issues written to %s, %d problems without source file skipped, "
+                        + "%d issues beyond the end of their file reported on the file, %d ms%n",
+                summary.issues, args[1], summary.skipped, summary.beyondEnd, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Converts the report
+     *
+     * @param report maintenance.json
+     * @param output generic issue report
+     * @return counts of written issues and skipped problems
+     */
+    Summary convert(Path report, Path output) throws IOException, InterruptedException {
+        IssueWriter writer = new IssueWriter(output, Runtime.getRuntime().availableProcessors());
+        writer.start();
+        try (Reader json = new BufferedReader(new InputStreamReader(Files.newInputStream(report), StandardCharsets.UTF_8), BUFFER_SIZE)) {
+            TabRouter router = new TabRouter()
+                    .register(RiskTables.BUG_TAB, row -> writer.put(RiskTables.problem(Status.BUG, row)))
+                    .register(RiskTables.THREAT_TAB, row -> writer.put(RiskTables.problem(Status.THREAT, row)));
+            new ReportStreamReader(REPORT_GSON, ParseLimits.NONE).read(json, router, RiskTables.RISKS_SECTION);
+        } finally {
+            writer.finish();
+        }
+        return writer.summary;
+    }
+
+    /**
+     * Indexes java files of the source dirs by name, of the whole project except test sources and build output when
+     * there are no source dirs. Hidden directories are skipped
+     */
+    private static Map<String, List<String>> indexSources(Path projectDir, List<Path> sourceDirs) throws IOException {
+        Map<String, List<String>> sources = new HashMap<>();
+        for (Path root : sourceDirs.isEmpty() ? Collections.singletonList(projectDir) : sourceDirs) {
+            if (Files.isDirectory(root)) {
+                indexSources(projectDir, root, !sourceDirs.isEmpty(), sources);
+            } else {
+                System.err.printf("StackDrive - Source dir %s doesn't exist, skipped%n", root);
+            }
+        }
+        return sources;
+    }
+
+    private static void indexSources(Path projectDir, Path root, boolean sourceDir, Map<String, List<String>> sources) throws IOException {
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                if (dir.equals(root)) {
+                    return FileVisitResult.CONTINUE;
+                }
+                String name = dir.getFileName().toString();
+                boolean skipped = name.startsWith(".") || !sourceDir && isTestOrBuildOutput(root.relativize(dir));
+                return skipped ? FileVisitResult.SKIP_SUBTREE : FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(JAVA_EXTENSION)) {
+                    String relative = projectDir.relativize(file).toString().replace('\\', '/');
+                    sources.computeIfAbsent(name.substring(0, name.length() - JAVA_EXTENSION.length()), key -> new ArrayList<>(1))
+                            .add(relative);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /**
+     * @param dir directory relative to the project dir
+     */
+    private static boolean isTestOrBuildOutput(Path dir) {
+        String name = dir.getFileName().toString();
+        Path parent = dir.getParent();
+        if (TEST_DIR.equals(name) && parent != null && SOURCE_DIR.equals(parent.getFileName().toString())) {
+            return true;
+        }
+        if (!BUILD_DIRS.contains(name)) {
+            return false;
+        }
+        // packages named build are sources
+        for (Path element = parent; element != null; element = element.getParent()) {
+            if (SOURCE_DIR.equals(element.getFileName().toString())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Counts of a conversion
+     */
+    static final class Summary {
+
+        long issues;
+
+        long skipped;
+
+        long beyondEnd;
+    }
+
+    /**
+     * Issues of a chunk of problems, formatted as a JSON array
+     */
+    private static final class Chunk {
+
+        /**
+         * Marks the end of the chunks
+         */
+        static final Chunk END = new Chunk("[]", new Summary());
+
+        final String json;
+
+        final Summary summary;
+
+        Chunk(String json, Summary summary) {
+            this.json = json;
+            this.summary = summary;
+        }
+    }
+
+    /**
+     * Formats issues of chunks of problems in a pool of threads and appends them in report order in its own
+     * thread, so that JSON output, which costs more than parsing, overlaps report parsing and uses every core
+     */
+    private final class IssueWriter extends Thread {
+
+        private final List<Problem> batch = new ArrayList<>(CHUNK_SIZE);
+
+        private final ExecutorService formatters;
+
+        private final BlockingQueue<Future<Chunk>> chunks;
+
+        private final Path output;
+
+        private final Summary summary = new Summary();
+
+        /**
+         * Line counts of the files having issues on a line
+         */
+        private final Map<String, Integer> lineCounts = new ConcurrentHashMap<>();
+
+        private volatile IOException failure;
+
+        IssueWriter(Path output, int threads) {
+            super("stackdrive-issue-writer");
+            this.output = output;
+            this.formatters = Executors.newFixedThreadPool(threads);
+            this.chunks = new ArrayBlockingQueue<>(2 * threads);
+            setDaemon(true);
+        }
+
+        void put(Problem problem) {
+            batch.add(problem);
+            if (batch.size() == CHUNK_SIZE) {
+                flush();
+            }
+            if (failure != null) {
+                throw new UncheckedIOException("Failed to write " + output, failure);
+            }
+        }
+
+        /**
+         * Waits for queued problems to be written
+         */
+        void finish() throws IOException, InterruptedException {
+            try {
+                if (!batch.isEmpty()) {
+                    flush();
+                }
+                offer(CompletableFuture.completedFuture(Chunk.END));
+                join();
+            } finally {
+                formatters.shutdownNow();
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        }
+
+        private void flush() {
+            List<Problem> problems = new ArrayList<>(batch);
+            batch.clear();
+            try {
+                offer(formatters.submit(() -> format(problems)));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted", e);
+            }
+        }
+
+        /**
+         * Queues chunk, gives up when the writer is gone so that the parser never blocks on a full queue
+         */
+        private void offer(Future<Chunk> chunk) throws InterruptedException {
+            while (!chunks.offer(chunk, 100, TimeUnit.MILLISECONDS)) {
+                if (!isAlive()) {
+                    return;
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            try (Writer out = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(output), StandardCharsets.UTF_8), BUFFER_SIZE)) {
+                out.write("{\"issues\":[");
+                boolean first = true;
+                for (Chunk chunk = chunks.take().get(); chunk != Chunk.END; chunk = chunks.take().get()) {
+                    // Issues of the chunk without the array brackets
+                    if (chunk.json.length() > 2) {
+                        if (!first) {
+                            out.write(',');
+                        }
+                        out.write(chunk.json, 1, chunk.json.length() - 2);
+                        first = false;
+                    }
+                    summary.issues += chunk.summary.issues;
+                    summary.skipped += chunk.summary.skipped;
+                    summary.beyondEnd += chunk.summary.beyondEnd;
+                }
+                out.write("]}");
+            } catch (IOException e) {
+                failure = e;
+            } catch (ExecutionException e) {
+                failure = e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+            } catch (RuntimeException e) {
+                failure = new IOException(e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private Chunk format(List<Problem> problems) throws IOException {
+            StringBuilder out = new StringBuilder(problems.size() * 256);
+            Summary chunkSummary = new Summary();
+            try (JsonWriter json = new JsonWriter(new BuilderWriter(out))) {
+                json.beginArray();
+                for (Problem problem : problems) {
+                    write(json, problem, chunkSummary);
+                }
+                json.endArray();
+            }
+            return new Chunk(out.toString(), chunkSummary);
+        }
+
+        private void write(JsonWriter json, Problem problem, Summary summary) throws IOException {
+            List<String> files = problem.isProjectProblem()
+                    ? Collections.<String>emptyList()
+                    : sources.getOrDefault(problem.clazz(), Collections.<String>emptyList());
+            if (files.isEmpty()) {
+                summary.skipped++;
+                return;
+            }
+            ProblemRule rule = ProblemRule.of(problem);
+            int line = problem.line();
+            for (String file : files) {
+                json.beginObject()
+                        .name("engineId").value(ENGINE_ID)
+                        .name("ruleId").value(rule.getKey())
+                        .name("severity").value(rule.getSeverity())
+                        .name("type").value(rule.getType());
+                json.name("primaryLocation").beginObject()
+                        .name("message").value(problem.getMessage())
+                        .name("filePath").value(file);
+                if (line > 0 && line <= lineCount(file)) {
+                    json.name("textRange").beginObject().name("startLine").value(line).endObject();
+                } else if (line > 0) {
+                    // SonarQube rejects the whole report on a line it doesn't have
+                    summary.beyondEnd++;
+                }
+                json.endObject().endObject();
+                summary.issues++;
+            }
+        }
+
+        /**
+         * Counts lines like SonarQube does, a trailing line break starts one more line
+         *
+         * @return line count, 0 when the file can't be read
+         */
+        private int lineCount(String file) {
+            Integer count = lineCounts.get(file);
+            if (count == null) {
+                count = 0;
+                try (InputStream in = Files.newInputStream(projectDir.resolve(file))) {
+                    byte[] buffer = new byte[8192];
+                    int lines = 1;
+                    for (int read = in.read(buffer); read >= 0; read = in.read(buffer)) {
+                        for (int i = 0; i < read; i++) {
+                            if (buffer[i] == '\n') {
+                                lines++;
+                            }
+                        }
+                    }
+                    count = lines;
+                } catch (IOException e) {
+                    // Reported on the file
+                }
+                lineCounts.put(file, count);
+            }
+            return count;
+        }
+    }
+
+    /**
+     * Writer appending to a builder, unlike StringWriter not synchronized on every write
+     */
+    private static final class BuilderWriter extends Writer {
+
+        private final StringBuilder out;
+
+        BuilderWriter(StringBuilder out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(int c) {
+            out.append((char) c);
+        }
+
+        @Override
+        public void write(char[] chars, int offset, int length) {
+            out.append(chars, offset, length);
+        }
+
+        @Override
+        public void write(String str, int offset, int length) {
+            out.append(str, offset, offset + length);
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.stackdrive.sonarqube.concurrent;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Wall-clock budget of the analysis, checked by every phase before each unit of work.
+ * Work left out once the budget is spent is counted by kind for the final summary
+ */
+public final class TimeBudget {
+
+    private final long millis;
+
+    private final long deadline;
+
+    private final Map<String, Long> skipped = new LinkedHashMap<>();
+
+    private TimeBudget(long millis) {
+        this.millis = millis;
+        this.deadline = millis > 0 ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis) : 0;
+    }
+
+    /**
+     * @param millis budget, no limit when not positive
+     */
+    public static TimeBudget of(long millis) {
+        return new TimeBudget(millis);
+    }
+
+    public static TimeBudget unlimited() {
+        return new TimeBudget(0);
+    }
+
+    public boolean isLimited() {
+        return millis > 0;
+    }
+
+    public boolean isExpired() {
+        return millis > 0 && System.nanoTime() - deadline >= 0;
+    }
+
+    /**
+     * @return milliseconds left, {@link Long#MAX_VALUE} without limit
+     */
+    public long remainingMillis() {
+        if (millis <= 0) {
+            return Long.MAX_VALUE;
+        }
+        return Math.max(TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime()), 0);
+    }
+
+    public long getMillis() {
+        return millis;
+    }
+
+    /**
+     * Counts work left out because the budget is spent
+     *
+     * @param kind  kind of work, like issues
+     * @param count amount left out
+     */
+    public synchronized void skip(String kind, long count) {
+        if (count > 0) {
+            skipped.merge(kind, count, Long::sum);
+        }
+    }
+
+    /**
+     * Returns work left out by kind, in the order it was first left out
+     */
+    public synchronized Map<String, Long> getSkipped() {
+        return Collections.unmodifiableMap(new LinkedHashMap<>(skipped));
+    }
+}
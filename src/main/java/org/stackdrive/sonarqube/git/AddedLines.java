@@ -0,0 +1,75 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.stackdrive.sonarqube.git;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Lines added by a diff to the sources of a module, as sorted ranges by path relative to a source root
+ */
+public final class AddedLines {
+
+    private final Map<String, int[]> ranges = new HashMap<>();
+
+    private final int files;
+
+    private final int lines;
+
+    /**
+     * @param rangesByPath flattened {@code [start, end)} pairs of 1-based line numbers in ascending order,
+     *                     by repository relative path
+     * @param sourceRoots  source roots of the module, lines added to other files are left out
+     */
+    AddedLines(Map<String, int[]> rangesByPath, SourceRoots sourceRoots) {
+        int count = 0;
+        for (Map.Entry<String, int[]> entry : rangesByPath.entrySet()) {
+            String sourcePath = sourceRoots.relativize(entry.getKey());
+            if (sourcePath == null) {
+                continue;
+            }
+            int[] pathRanges = entry.getValue();
+            ranges.put(sourcePath, pathRanges);
+            for (int i = 0; i < pathRanges.length; i += 2) {
+                count += pathRanges[i + 1] - pathRanges[i];
+            }
+        }
+        this.files = ranges.size();
+        this.lines = count;
+    }
+
+    /**
+     * @param sourcePath path relative to a source root, like {@code org/stackdrive/Foo.java} of JaCoCo reports
+     * @return flattened {@code [start, end)} pairs of added lines in ascending order, {@code null} when no line was added
+     */
+    public int[] ranges(String sourcePath) {
+        return ranges.get(sourcePath);
+    }
+
+    public int getFiles() {
+        return files;
+    }
+
+    /**
+     * Returns number of added lines, executable or not
+     */
+    public int getLines() {
+        return lines;
+    }
+}
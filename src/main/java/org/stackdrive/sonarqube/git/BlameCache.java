@@ -0,0 +1,200 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.stackdrive.sonarqube.git;
+
+import org.eclipse.jgit.lib.ObjectId;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Line authors of blamed blobs kept between analyses, one file per repository, path and blob id.
+ * Blame of a blob depends on the history of its path, so the same content elsewhere gets its own entry.
+ * Entries are touched when read, once there are more than {@link #MAX_ENTRIES} the least recently used
+ * ones are removed. A broken entry is treated as missing
+ */
+class BlameCache {
+
+    private static final Logger LOGGER = Loggers.get(BlameCache.class);
+
+    private static final int VERSION = 2;
+
+    static final int MAX_ENTRIES = 50_000;
+
+    private final Path directory;
+
+    private final String repository;
+
+    private volatile boolean written;
+
+    /**
+     * @param directory  directory of the cache, shared by repositories
+     * @param repository identity of the repository, like its remote url
+     */
+    BlameCache(Path directory, String repository) {
+        this.directory = directory;
+        this.repository = repository;
+    }
+
+    /**
+     * @return authors by line, {@code null} when the blob wasn't blamed at the path yet
+     */
+    String[] get(String path, ObjectId blob) {
+        Path entry = entry(path, blob);
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(entry)))) {
+            if (input.readInt() != VERSION) {
+                return null;
+            }
+            String[] distinct = new String[input.readInt()];
+            for (int i = 0; i < distinct.length; i++) {
+                distinct[i] = input.readUTF();
+            }
+            String[] authors = new String[input.readInt()];
+            for (int i = 0; i < authors.length; i++) {
+                int index = input.readInt();
+                authors[i] = index < 0 ? null : distinct[index];
+            }
+            Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+            return authors;
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException | RuntimeException e) {
+            LOGGER.debug("StackDrive - Broken blame cache entry '{}': {}", entry, e.getMessage());
+            return null;
+        }
+    }
+
+    void put(String path, ObjectId blob, String[] authors) {
+        Path entry = entry(path, blob);
+        try {
+            Files.createDirectories(entry.getParent());
+            Path temp = Files.createTempFile(entry.getParent(), entry.getFileName().toString(), ".tmp");
+            try {
+                Map<String, Integer> indexes = new HashMap<>();
+                List<String> distinct = new ArrayList<>();
+                for (String author : authors) {
+                    if (author != null && !indexes.containsKey(author)) {
+                        indexes.put(author, distinct.size());
+                        distinct.add(author);
+                    }
+                }
+                try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                    output.writeInt(VERSION);
+                    output.writeInt(distinct.size());
+                    for (String author : distinct) {
+                        output.writeUTF(author);
+                    }
+                    output.writeInt(authors.length);
+                    for (String author : authors) {
+                        output.writeInt(author == null ? -1 : indexes.get(author));
+                    }
+                }
+                Files.move(temp, entry, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                written = true;
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } catch (IOException | RuntimeException e) {
+            LOGGER.debug("StackDrive - Can't write blame cache entry '{}': {}", entry, e.getMessage());
+        }
+    }
+
+    /**
+     * Removes the least recently used entries once there are more than {@link #MAX_ENTRIES}, down to 3/4 of it
+     * so that the next analyses don't prune again. Nothing is done when no entry was written
+     */
+    void prune() {
+        if (!written) {
+            return;
+        }
+        List<Path> entries;
+        try (Stream<Path> files = Files.find(directory, 2, (file, attributes) -> attributes.isRegularFile())) {
+            entries = files.collect(Collectors.toList());
+        } catch (IOException | RuntimeException e) {
+            LOGGER.debug("StackDrive - Can't list blame cache '{}': {}", directory, e.getMessage());
+            return;
+        }
+        if (entries.size() <= MAX_ENTRIES) {
+            return;
+        }
+        Map<Path, Long> modified = new HashMap<>();
+        for (Path entry : entries) {
+            modified.put(entry, lastModified(entry));
+        }
+        entries.sort(Comparator.comparing(modified::get));
+        int removed = 0;
+        for (Path entry : entries.subList(0, entries.size() - MAX_ENTRIES * 3 / 4)) {
+            try {
+                Files.deleteIfExists(entry);
+                removed++;
+            } catch (IOException e) {
+                LOGGER.debug("StackDrive - Can't remove blame cache entry '{}': {}", entry, e.getMessage());
+            }
+        }
+        LOGGER.debug("StackDrive - Removed {} least recently used blame cache entries", removed);
+    }
+
+    private static long lastModified(Path entry) {
+        try {
+            return Files.getLastModifiedTime(entry).toMillis();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private Path entry(String path, ObjectId blob) {
+        String name = key(repository, path, blob.name());
+        return directory.resolve(name.substring(0, 2)).resolve(name.substring(2));
+    }
+
+    private static String key(String... parts) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            for (String part : parts) {
+                digest.update(part.getBytes(StandardCharsets.UTF_8));
+                // Separator, so that parts can't shift into each other
+                digest.update((byte) 0);
+            }
+            return String.format("%040x", new BigInteger(1, digest.digest()));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 is not supported", e);
+        }
+    }
+}
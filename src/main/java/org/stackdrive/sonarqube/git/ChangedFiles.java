@@ -0,0 +1,93 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.stackdrive.sonarqube.git;
+
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Files of a module added or modified since the merge base of a pull request, as repository relative paths
+ */
+public final class ChangedFiles {
+
+    private static final String JAVA_SUFFIX = ".java";
+
+    private final Path workTree;
+
+    private final Set<String> paths = new LinkedHashSet<>();
+
+    /**
+     * Paths relative to the source root of the module containing them
+     */
+    private final Set<String> sources = new HashSet<>();
+
+    private final Set<String> classes = new HashSet<>();
+
+    /**
+     * @param changedPaths repository relative paths of changed files
+     * @param sourceRoots  source roots of the module, other files are left out
+     */
+    ChangedFiles(Path workTree, Set<String> changedPaths, SourceRoots sourceRoots) {
+        this.workTree = workTree;
+        for (String path : changedPaths) {
+            String source = sourceRoots.relativize(path);
+            if (source == null) {
+                continue;
+            }
+            paths.add(path);
+            sources.add(source);
+            if (path.endsWith(JAVA_SUFFIX)) {
+                String name = path.substring(path.lastIndexOf('/') + 1);
+                classes.add(name.substring(0, name.length() - JAVA_SUFFIX.length()));
+            }
+        }
+    }
+
+    public int size() {
+        return paths.size();
+    }
+
+    /**
+     * Returns absolute paths of changed files
+     */
+    public Set<Path> files() {
+        Set<Path> files = new LinkedHashSet<>();
+        for (String path : paths) {
+            files.add(workTree.resolve(path));
+        }
+        return files;
+    }
+
+    /**
+     * Returns simple names of changed Java classes of the module, as in problem elements
+     */
+    public Set<String> classes() {
+        return Collections.unmodifiableSet(classes);
+    }
+
+    /**
+     * @param sourcePath path relative to a source root, like {@code org/stackdrive/Foo.java} of JaCoCo reports
+     */
+    public boolean containsSource(String sourcePath) {
+        return sources.contains(sourcePath);
+    }
+}
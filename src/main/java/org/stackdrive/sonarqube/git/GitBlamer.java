@@ -0,0 +1,152 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.stackdrive.sonarqube.git;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.blame.BlameResult;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.TreeWalk;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Line authors of working tree files, blamed at HEAD. Files are blamed only when their content is the HEAD one,
+ * results are cached by repository, path and blob id so that unchanged files are never blamed again. Safe for concurrent use,
+ * the number of files read and blamed at once is bounded whatever the number of calling threads
+ */
+public class GitBlamer implements Closeable {
+
+    private final Repository repository;
+
+    private final BlameCache cache;
+
+    private final RevCommit head;
+
+    private final Path workTree;
+
+    private final Semaphore permits;
+
+    /**
+     * @param repository repository, closed with the blamer
+     * @param cacheDir   directory of the persistent cache
+     * @param maxBlames  files read and blamed at once at most
+     */
+    public GitBlamer(Repository repository, Path cacheDir, int maxBlames) throws IOException {
+        this.repository = repository;
+        this.permits = new Semaphore(Math.max(maxBlames, 1));
+        this.cache = new BlameCache(cacheDir, identity(repository));
+        this.workTree = repository.getWorkTree().toPath().toRealPath();
+        ObjectId headId = repository.resolve(Constants.HEAD);
+        try (RevWalk walk = new RevWalk(repository)) {
+            this.head = headId == null ? null : walk.parseCommit(headId);
+        }
+    }
+
+    /**
+     * Returns author emails by line, index 0 being line 1
+     *
+     * @param file working tree file
+     * @return authors, {@code null} when the file is untracked or modified
+     */
+    public String[] blame(Path file) throws IOException, GitAPIException, InterruptedException {
+        if (head == null) {
+            return null;
+        }
+        permits.acquire();
+        try {
+            return blameHead(file);
+        } finally {
+            permits.release();
+        }
+    }
+
+    private String[] blameHead(Path file) throws IOException, GitAPIException {
+        Path realFile = file.toRealPath();
+        if (!realFile.startsWith(workTree)) {
+            return null;
+        }
+        String path = workTree.relativize(realFile).toString().replace('\\', '/');
+        ObjectId blob;
+        try (TreeWalk treeWalk = TreeWalk.forPath(repository, path, head.getTree())) {
+            if (treeWalk == null) {
+                return null;
+            }
+            blob = treeWalk.getObjectId(0);
+        }
+        try (ObjectInserter.Formatter formatter = new ObjectInserter.Formatter()) {
+            if (!blob.equals(formatter.idFor(Constants.OBJ_BLOB, Files.readAllBytes(realFile)))) {
+                return null;
+            }
+        }
+        String[] authors = cache.get(path, blob);
+        if (authors == null) {
+            authors = blame(path);
+            if (authors == null) {
+                return null;
+            }
+            cache.put(path, blob, authors);
+        }
+        return authors;
+    }
+
+    private String[] blame(String path) throws GitAPIException {
+        BlameResult result = Git.wrap(repository).blame()
+                .setStartCommit(head)
+                .setFilePath(path)
+                .call();
+        if (result == null) {
+            return null;
+        }
+        String[] authors = new String[result.getResultContents().size()];
+        for (int i = 0; i < authors.length; i++) {
+            PersonIdent author = result.getSourceAuthor(i);
+            authors[i] = author == null ? null : author.getEmailAddress().intern();
+        }
+        return authors;
+    }
+
+    /**
+     * Identity of the repository in the cache: its origin url, so that clones in other work dirs share entries,
+     * or its git directory
+     */
+    private static String identity(Repository repository) throws IOException {
+        String url = repository.getConfig().getString("remote", "origin", "url");
+        return url != null ? url : repository.getDirectory().toPath().toRealPath().toString();
+    }
+
+    @Override
+    public void close() {
+        try {
+            cache.prune();
+        } finally {
+            repository.close();
+        }
+    }
+}
@@ -20,12 +20,30 @@ package org.stackdrive.sonarqube.git;
 
 import org.stackdrive.sonarqube.properties.StackDriveProperties;
 import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.diff.DiffEntry;
+import org.eclipse.jgit.diff.DiffFormatter;
+import org.eclipse.jgit.diff.Edit;
+import org.eclipse.jgit.diff.EditList;
+import org.eclipse.jgit.diff.RawTextComparator;
+import org.eclipse.jgit.errors.RevisionSyntaxException;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.ObjectReader;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.lib.RepositoryBuilder;
 import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.revwalk.filter.RevFilter;
 import org.eclipse.jgit.transport.RemoteConfig;
 import org.eclipse.jgit.transport.URIish;
+import org.eclipse.jgit.treewalk.AbstractTreeIterator;
+import org.eclipse.jgit.treewalk.CanonicalTreeParser;
+import org.eclipse.jgit.treewalk.EmptyTreeIterator;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+import org.eclipse.jgit.util.io.DisabledOutputStream;
+import org.sonar.api.batch.InstantiationStrategy;
+import org.sonar.api.batch.ScannerSide;
 import org.sonar.api.utils.MessageException;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
@@ -33,21 +51,23 @@ import org.sonar.api.utils.log.Loggers;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
+/**
+ * Git access, one instance per scanner run
+ */
+@ScannerSide
+@InstantiationStrategy(InstantiationStrategy.PER_BATCH)
 public class GitService {
 
     private static final Logger LOGGER = Loggers.get(GitService.class);
 
-    private static final String BUILD_VERSION = new StackDriveProperties().getBuildVersion();
-
-    private final StackDriveProperties stackProperties;
-
-    public GitService() {
-        this.stackProperties = new StackDriveProperties();
-        LOGGER.trace("StackDrive Log Service Url {} ", stackProperties.getLogHost() + "/audit");
-    }
-
     public RepositoryBuilder getVerifiedRepositoryBuilder(Path basedir) {
         RepositoryBuilder builder = new RepositoryBuilder()
                 .findGitDir(basedir.toFile())
@@ -72,6 +92,103 @@ public class GitService {
         }
     }
 
+    /**
+     * Opens blamer of the repository of the base dir
+     *
+     * @param cacheDir  directory of the persistent blame cache
+     * @param maxBlames files blamed at once at most
+     */
+    public GitBlamer openBlamer(File baseDir, Path cacheDir, int maxBlames) throws IOException {
+        Repository repo = buildRepository(baseDir.toPath());
+        try {
+            return new GitBlamer(repo, cacheDir, maxBlames);
+        } catch (IOException | RuntimeException e) {
+            repo.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Computes files added or modified since the merge base of the target revision and HEAD by comparing their trees.
+     * History is walked only to find the merge base, so changes made to the target after it aren't counted
+     *
+     * @param target     revision the pull request is merged into, like origin/master
+     * @param sourceDirs source directories of the module
+     * @return changed files of the module, {@code null} when a revision can't be resolved
+     */
+    public ChangedFiles getChangedFiles(File baseDir, String target, Collection<Path> sourceDirs) {
+        try (Repository repo = buildRepository(baseDir.toPath()); TreeWalk treeWalk = new TreeWalk(repo)) {
+            ObjectId baseTree = resolveMergeBaseTree(repo, target);
+            ObjectId headTree = resolveTree(repo, Constants.HEAD);
+            if (baseTree == null || headTree == null) {
+                LOGGER.warn("StackDrive - Can't resolve merge base of '{}' and HEAD", target);
+                return null;
+            }
+            treeWalk.addTree(baseTree);
+            treeWalk.addTree(headTree);
+            treeWalk.setRecursive(true);
+            treeWalk.setFilter(TreeFilter.ANY_DIFF);
+            Set<String> paths = new LinkedHashSet<>();
+            while (treeWalk.next()) {
+                if (treeWalk.getFileMode(1).getObjectType() == Constants.OBJ_BLOB) {
+                    paths.add(treeWalk.getPathString());
+                }
+            }
+            return new ChangedFiles(repo.getWorkTree().toPath(), paths, SourceRoots.of(repo.getWorkTree().toPath(), sourceDirs));
+        } catch (IOException e) {
+            LOGGER.warn("StackDrive - Can't diff HEAD against merge base of '" + target + "'", e);
+            return null;
+        }
+    }
+
+    /**
+     * Computes lines added between the base revision and HEAD to the sources of a module
+     *
+     * @param base       revision HEAD is merged into, HEAD is compared to their merge base. The parent of HEAD when {@code null}
+     * @param sourceDirs source directories of the module
+     * @return added lines, {@code null} when a revision can't be resolved
+     */
+    public AddedLines getAddedLines(File baseDir, String base, Collection<Path> sourceDirs) {
+        try (Repository repo = buildRepository(baseDir.toPath());
+             ObjectReader reader = repo.newObjectReader();
+             DiffFormatter formatter = new DiffFormatter(DisabledOutputStream.INSTANCE)) {
+            ObjectId headTree = resolveTree(repo, Constants.HEAD);
+            ObjectId baseTree = base == null ? resolveTree(repo, Constants.HEAD + "~1") : resolveMergeBaseTree(repo, base);
+            // Only a root commit is compared to the empty tree, the parent of a shallow HEAD is just missing
+            if (headTree == null || (baseTree == null && (base != null || !isRootCommit(repo, reader)))) {
+                LOGGER.warn("StackDrive - Can't resolve '{}' or HEAD, new code coverage isn't computed", base == null ? Constants.HEAD + "~1" : base);
+                return null;
+            }
+            formatter.setRepository(repo);
+            formatter.setDiffComparator(RawTextComparator.DEFAULT);
+            formatter.setDetectRenames(false);
+            // The root commit adds everything
+            AbstractTreeIterator oldTree = baseTree == null ? new EmptyTreeIterator() : new CanonicalTreeParser(null, reader, baseTree);
+            Map<String, int[]> ranges = new HashMap<>();
+            for (DiffEntry entry : formatter.scan(oldTree, new CanonicalTreeParser(null, reader, headTree))) {
+                if (entry.getChangeType() == DiffEntry.ChangeType.DELETE) {
+                    continue;
+                }
+                EditList edits = formatter.toFileHeader(entry).toEditList();
+                int[] pathRanges = new int[edits.size() * 2];
+                int size = 0;
+                for (Edit edit : edits) {
+                    if (edit.getEndB() > edit.getBeginB()) {
+                        pathRanges[size++] = edit.getBeginB() + 1;
+                        pathRanges[size++] = edit.getEndB() + 1;
+                    }
+                }
+                if (size > 0) {
+                    ranges.put(entry.getNewPath(), Arrays.copyOf(pathRanges, size));
+                }
+            }
+            return new AddedLines(ranges, SourceRoots.of(repo.getWorkTree().toPath(), sourceDirs));
+        } catch (IOException e) {
+            LOGGER.warn("StackDrive - Can't diff HEAD against '" + base + "'", e);
+            return null;
+        }
+    }
+
     public boolean supports(File baseDir) {
         RepositoryBuilder builder = new RepositoryBuilder().findGitDir(baseDir);
         return builder.getGitDir() != null;
@@ -104,12 +221,61 @@ public class GitService {
         return new LastCommitInfo(lastAuthor, repoName, bitbucketRepo, hash);
     }
 
+    /**
+     * @return tree of the revision, {@code null} when the revision is malformed or unknown
+     */
+    private static ObjectId resolveTree(Repository repo, String revision) throws IOException {
+        try {
+            return repo.resolve(revision + "^{tree}");
+        } catch (RevisionSyntaxException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Finds the merge base of the revision and HEAD with a single walk, stopping at the first common commit
+     *
+     * @return tree of the merge base, {@code null} when a revision is unknown or the clone is too shallow to have it
+     */
+    private static ObjectId resolveMergeBaseTree(Repository repo, String revision) throws IOException {
+        ObjectId target;
+        try {
+            target = repo.resolve(revision + "^{commit}");
+        } catch (RevisionSyntaxException e) {
+            return null;
+        }
+        ObjectId head = repo.resolve(Constants.HEAD);
+        if (target == null || head == null) {
+            return null;
+        }
+        try (RevWalk walk = new RevWalk(repo)) {
+            walk.setRevFilter(RevFilter.MERGE_BASE);
+            walk.markStart(walk.parseCommit(target));
+            walk.markStart(walk.parseCommit(head));
+            RevCommit mergeBase = walk.next();
+            return mergeBase == null ? null : mergeBase.getTree();
+        }
+    }
+
+    /**
+     * @return whether HEAD has no parent, shallow commits have their parents cut off
+     */
+    private static boolean isRootCommit(Repository repo, ObjectReader reader) throws IOException {
+        ObjectId head = repo.resolve(Constants.HEAD);
+        if (head == null) {
+            return false;
+        }
+        try (RevWalk walk = new RevWalk(reader)) {
+            return walk.parseCommit(head).getParentCount() == 0 && !reader.getShallowCommits().contains(head);
+        }
+    }
+
     private String createHttps(String path, String host, String repo) {
         StringBuilder sb = new StringBuilder();
         sb.append("https://");
         sb.append(host);
 
-        if (!BUILD_VERSION.contains("DEV")) {
+        if (!StackDriveProperties.get().getBuildVersion().contains("DEV")) {
             sb.append("/stash");
         }
 
@@ -0,0 +1,79 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.stackdrive.sonarqube.git;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Source directories of a module as repository relative paths, so that diff paths of the repository
+ * become paths relative to a source root, like {@code org/stackdrive/Foo.java} of JaCoCo reports.
+ * Only files of the module match, the same package in another module doesn't
+ */
+final class SourceRoots {
+
+    /**
+     * Roots ending with '/', the empty root being the work tree itself
+     */
+    private final List<String> roots;
+
+    SourceRoots(List<String> roots) {
+        this.roots = roots;
+    }
+
+    /**
+     * @param workTree   work tree of the repository
+     * @param sourceDirs source directories of the module, those outside of the work tree are left out
+     */
+    static SourceRoots of(Path workTree, Collection<Path> sourceDirs) throws IOException {
+        Path realWorkTree = workTree.toRealPath();
+        List<String> roots = new ArrayList<>();
+        for (Path dir : sourceDirs) {
+            Path realDir;
+            try {
+                realDir = dir.toRealPath();
+            } catch (IOException e) {
+                // missing source dir
+                continue;
+            }
+            if (realDir.startsWith(realWorkTree)) {
+                String root = realWorkTree.relativize(realDir).toString().replace('\\', '/');
+                roots.add(root.isEmpty() ? root : root + "/");
+            }
+        }
+        return new SourceRoots(roots);
+    }
+
+    /**
+     * @param path repository relative path
+     * @return path relative to the innermost source root containing it, {@code null} outside of the sources
+     */
+    String relativize(String path) {
+        String root = null;
+        for (String candidate : roots) {
+            if (path.startsWith(candidate) && (root == null || candidate.length() > root.length())) {
+                root = candidate;
+            }
+        }
+        return root == null ? null : path.substring(root.length());
+    }
+}
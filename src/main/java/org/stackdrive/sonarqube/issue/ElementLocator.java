@@ -0,0 +1,110 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.stackdrive.sonarqube.issue;
+
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.fs.TextRange;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+import org.stackdrive.sonarqube.model.Problem;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Resolves element references {@code Class#line}, {@code Class#method} and {@code Outer$Inner#method}
+ * (or {@code Outer.Inner#method}) to text ranges of a file.
+ * Declarations of a file are indexed once on first use and kept in a LRU cache, not thread safe
+ */
+public class ElementLocator {
+
+    private static final Logger LOGGER = Loggers.get(ElementLocator.class);
+
+    private final Map<InputFile, SourceIndex> indexes;
+
+    /**
+     * @param cacheSize number of indexed files kept
+     */
+    public ElementLocator(final int cacheSize) {
+        this.indexes = new LinkedHashMap<InputFile, SourceIndex>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<InputFile, SourceIndex> eldest) {
+                return size() > Math.max(cacheSize, 1);
+            }
+        };
+    }
+
+    /**
+     * Returns range of the referenced line or declaration
+     *
+     * @param file    file of the problem
+     * @param problem problem
+     * @return range, the class range when the member is unknown, {@code null} when the element can not be found in the file
+     */
+    public TextRange locate(InputFile file, Problem problem) {
+        String element = problem.getElement();
+        int hash = element.indexOf('#');
+        String member = hash < 0 ? null : element.substring(hash + 1).trim();
+        int line = problem.line();
+        if (line > 0 && member != null) {
+            return line <= file.lines() ? file.selectLine(line) : null;
+        }
+        String[] path = (hash < 0 ? element : element.substring(0, hash)).split("[$.]");
+        SourceIndex.Declaration declaration = find(index(file).types(), path[0]);
+        for (int i = 1; i < path.length && declaration != null; i++) {
+            declaration = declaration.member(path[i], true);
+        }
+        if (declaration != null && member != null && !member.isEmpty()) {
+            SourceIndex.Declaration method = declaration.member(member, false);
+            if (method == null) {
+                method = declaration.member(member, true);
+            }
+            if (method != null) {
+                declaration = method;
+            }
+        }
+        return declaration == null ? null
+                : file.newRange(declaration.startLine, declaration.startOffset, declaration.endLine, declaration.endOffset);
+    }
+
+    private static SourceIndex.Declaration find(List<SourceIndex.Declaration> types, String name) {
+        for (SourceIndex.Declaration type : types) {
+            if (type.name.equals(name)) {
+                return type;
+            }
+        }
+        return null;
+    }
+
+    private SourceIndex index(InputFile file) {
+        SourceIndex index = indexes.get(file);
+        if (index == null) {
+            try {
+                index = SourceIndex.of(file.contents());
+            } catch (IOException | RuntimeException e) {
+                LOGGER.debug("StackDrive - failed to index {}: {}", file, e.getMessage());
+                index = SourceIndex.EMPTY;
+            }
+            indexes.put(file, index);
+        }
+        return index;
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.stackdrive.sonarqube.issue;
+
+import org.stackdrive.sonarqube.model.Problem;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+
+/**
+ * Groups problems of a file by rule, so that one issue is created per file and rule.
+ * Problems of a file are expected to come one after another, the file group is emitted when another file comes
+ *
+ * @param <F> file type
+ * @param <R> rule type
+ */
+public class IssueClusterer<F, R> {
+
+    private final Function<Problem, R> ruleOf;
+
+    private final ClusterEmitter<F, R> emitter;
+
+    private final Map<R, List<Problem>> clusters = new LinkedHashMap<>();
+
+    private F file;
+
+    /**
+     * @param ruleOf  rule of a problem
+     * @param emitter issue creation of a cluster
+     */
+    public IssueClusterer(Function<Problem, R> ruleOf, ClusterEmitter<F, R> emitter) {
+        this.ruleOf = ruleOf;
+        this.emitter = emitter;
+    }
+
+    public void accept(F file, Problem problem) {
+        if (!clusters.isEmpty() && !Objects.equals(this.file, file)) {
+            flush();
+        }
+        this.file = file;
+        clusters.computeIfAbsent(ruleOf.apply(problem), rule -> new ArrayList<>()).add(problem);
+    }
+
+    /**
+     * Emits clusters of the current file
+     */
+    public void flush() {
+        for (Map.Entry<R, List<Problem>> cluster : clusters.entrySet()) {
+            emitter.emit(file, cluster.getKey(), cluster.getValue());
+        }
+        clusters.clear();
+        file = null;
+    }
+
+    /**
+     * Creates the issue of a cluster
+     */
+    @FunctionalInterface
+    public interface ClusterEmitter<F, R> {
+
+        void emit(F file, R rule, List<Problem> problems);
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.stackdrive.sonarqube.issue;
+
+import org.stackdrive.sonarqube.model.Problem;
+import org.stackdrive.sonarqube.model.Severety;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.function.BiConsumer;
+
+/**
+ * Keeps the most severe problems within global and per file limits, using bounded min-heaps
+ * so that selection is O(n log k) while problems stream by. A limit which is not positive is disabled
+ *
+ * @param <F> file type
+ */
+public class IssueSelector<F> {
+
+    private final int maxIssues;
+
+    private final int maxIssuesPerFile;
+
+    private final BiConsumer<F, Problem> emitter;
+
+    /**
+     * Least severe retained problem on top, later offers lose ties
+     */
+    private final PriorityQueue<Candidate<F>> retained;
+
+    private long sequence;
+
+    private long suppressed;
+
+    /**
+     * @param maxIssues        maximum number of issues of the module
+     * @param maxIssuesPerFile maximum number of issues of a file
+     * @param emitter          issue creation of selected problems
+     */
+    public IssueSelector(int maxIssues, int maxIssuesPerFile, BiConsumer<F, Problem> emitter) {
+        this.maxIssues = maxIssues;
+        this.maxIssuesPerFile = maxIssuesPerFile;
+        this.emitter = emitter;
+        this.retained = maxIssues > 0 ? new PriorityQueue<>(Math.min(maxIssues, 1024) + 1, Candidate.<F>leastSevereFirst()) : null;
+    }
+
+    /**
+     * Offers problems of a file. Without global limit, selected problems are emitted right away
+     *
+     * @param file     file, {@code null} for project problems
+     * @param problems problems of the file
+     */
+    public void offer(F file, List<Problem> problems) {
+        offer(file, problems, null);
+    }
+
+    /**
+     * Offers problems of a file having the severety. Severity-first emission offers every file once per severety,
+     * from the most severe one, the per file limit still applies to all problems of the file
+     *
+     * @param file     file, {@code null} for project problems
+     * @param problems problems of the file
+     * @param severety severety of the offered problems, {@code null} for all
+     */
+    public void offer(F file, List<Problem> problems, Severety severety) {
+        List<Problem> selected = selectPerFile(problems);
+        suppressed += count(problems, severety) - count(selected, severety);
+        for (Problem problem : selected) {
+            if (severety != null && problem.getSeverety() != severety) {
+                continue;
+            }
+            if (retained == null) {
+                emitter.accept(file, problem);
+                continue;
+            }
+            retained.add(new Candidate<>(file, problem, sequence++));
+            if (retained.size() > maxIssues) {
+                retained.poll();
+                suppressed++;
+            }
+        }
+    }
+
+    /**
+     * Emits retained problems grouped by file, so that problems of a file come one after another.
+     * Files come from the one having the most severe problem, problems of a file most severe first
+     */
+    public void flush() {
+        if (retained == null) {
+            return;
+        }
+        List<Candidate<F>> candidates = new ArrayList<>(retained);
+        retained.clear();
+        candidates.sort(Candidate.<F>leastSevereFirst().reversed());
+        Map<F, List<Problem>> files = new LinkedHashMap<>();
+        for (Candidate<F> candidate : candidates) {
+            files.computeIfAbsent(candidate.file, file -> new ArrayList<>()).add(candidate.problem);
+        }
+        for (Map.Entry<F, List<Problem>> file : files.entrySet()) {
+            for (Problem problem : file.getValue()) {
+                emitter.accept(file.getKey(), problem);
+            }
+        }
+    }
+
+    /**
+     * Returns number of problems left out by the limits
+     */
+    public long getSuppressed() {
+        return suppressed;
+    }
+
+    private List<Problem> selectPerFile(List<Problem> problems) {
+        if (maxIssuesPerFile <= 0 || problems.size() <= maxIssuesPerFile) {
+            return problems;
+        }
+        PriorityQueue<Problem> selected = new PriorityQueue<>(maxIssuesPerFile + 1, Problem.SEVERITY_ORDER.reversed());
+        for (Problem problem : problems) {
+            selected.add(problem);
+            if (selected.size() > maxIssuesPerFile) {
+                selected.poll();
+            }
+        }
+        return new ArrayList<>(selected);
+    }
+
+    private static int count(List<Problem> problems, Severety severety) {
+        if (severety == null) {
+            return problems.size();
+        }
+        int count = 0;
+        for (Problem problem : problems) {
+            if (problem.getSeverety() == severety) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static final class Candidate<F> {
+
+        private final F file;
+
+        private final Problem problem;
+
+        private final long sequence;
+
+        Candidate(F file, Problem problem, long sequence) {
+            this.file = file;
+            this.problem = problem;
+            this.sequence = sequence;
+        }
+
+        static <F> Comparator<Candidate<F>> leastSevereFirst() {
+            return Comparator.<Candidate<F>, Problem>comparing(candidate -> candidate.problem, Problem.SEVERITY_ORDER.reversed())
+                    .thenComparing(candidate -> candidate.sequence, Comparator.reverseOrder());
+        }
+    }
+}
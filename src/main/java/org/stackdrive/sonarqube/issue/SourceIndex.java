@@ -0,0 +1,370 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.stackdrive.sonarqube.issue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Type and method declarations of a Java source with their text positions.
+ * Built by a lightweight tokenizer skipping comments and literals and following braces, no syntax tree is built
+ */
+class SourceIndex {
+
+    static final SourceIndex EMPTY = new SourceIndex(Collections.<Declaration>emptyList());
+
+    private final List<Declaration> types;
+
+    private SourceIndex(List<Declaration> types) {
+        this.types = types;
+    }
+
+    /**
+     * Top level types
+     */
+    List<Declaration> types() {
+        return types;
+    }
+
+    static SourceIndex of(CharSequence source) {
+        return new Builder(Tokenizer.tokenize(source)).build();
+    }
+
+    /**
+     * Declaration from its name to its closing brace, or semicolon for methods without body
+     */
+    static final class Declaration {
+
+        final boolean type;
+
+        final String name;
+
+        final int startLine;
+
+        final int startOffset;
+
+        int endLine;
+
+        int endOffset;
+
+        final List<Declaration> members = new ArrayList<>();
+
+        Declaration(boolean type, Token name) {
+            this.type = type;
+            this.name = name.text;
+            this.startLine = name.line;
+            this.startOffset = name.offset;
+            this.endLine = name.line;
+            this.endOffset = name.offset + name.text.length();
+        }
+
+        Declaration member(String memberName, boolean memberType) {
+            for (Declaration member : members) {
+                if (member.type == memberType && member.name.equals(memberName)) {
+                    return member;
+                }
+            }
+            return null;
+        }
+
+        void end(Token token) {
+            this.endLine = token.line;
+            this.endOffset = token.offset + token.text.length();
+        }
+    }
+
+    static final class Token {
+
+        static final int IDENTIFIER = 0;
+
+        static final int SYMBOL = 1;
+
+        static final int LITERAL = 2;
+
+        final int kind;
+
+        final String text;
+
+        final int line;
+
+        final int offset;
+
+        Token(int kind, String text, int line, int offset) {
+            this.kind = kind;
+            this.text = text;
+            this.line = line;
+            this.offset = offset;
+        }
+
+        boolean is(String symbol) {
+            return kind != LITERAL && text.equals(symbol);
+        }
+    }
+
+    /**
+     * Splits source into identifiers, single char symbols and opaque literals, lines are 1-based, offsets 0-based
+     */
+    static final class Tokenizer {
+
+        private final CharSequence source;
+
+        private final List<Token> tokens = new ArrayList<>();
+
+        private int pos;
+
+        private int line = 1;
+
+        private int lineStart;
+
+        private Tokenizer(CharSequence source) {
+            this.source = source;
+        }
+
+        static List<Token> tokenize(CharSequence source) {
+            Tokenizer tokenizer = new Tokenizer(source);
+            tokenizer.run();
+            return tokenizer.tokens;
+        }
+
+        private void run() {
+            int length = source.length();
+            while (pos < length) {
+                char c = source.charAt(pos);
+                if (c == '\n') {
+                    newLine(++pos);
+                } else if (Character.isWhitespace(c)) {
+                    pos++;
+                } else if (c == '/' && peek(1) == '/') {
+                    while (pos < length && source.charAt(pos) != '\n') {
+                        pos++;
+                    }
+                } else if (c == '/' && peek(1) == '*') {
+                    skipUntil("*/", 2);
+                } else if (c == '"' && peek(1) == '"' && peek(2) == '"') {
+                    literal(3, "\"\"\"");
+                } else if (c == '"' || c == '\'') {
+                    literal(1, String.valueOf(c));
+                } else if (Character.isJavaIdentifierStart(c)) {
+                    int start = pos;
+                    while (pos < length && Character.isJavaIdentifierPart(source.charAt(pos))) {
+                        pos++;
+                    }
+                    tokens.add(new Token(Token.IDENTIFIER, source.subSequence(start, pos).toString(), line, start - lineStart));
+                } else if (Character.isDigit(c)) {
+                    int start = pos;
+                    while (pos < length && (Character.isJavaIdentifierPart(source.charAt(pos)) || source.charAt(pos) == '.')) {
+                        pos++;
+                    }
+                    tokens.add(new Token(Token.LITERAL, "0", line, start - lineStart));
+                } else {
+                    tokens.add(new Token(Token.SYMBOL, String.valueOf(c), line, pos - lineStart));
+                    pos++;
+                }
+            }
+        }
+
+        private char peek(int ahead) {
+            return pos + ahead < source.length() ? source.charAt(pos + ahead) : 0;
+        }
+
+        private void newLine(int nextLineStart) {
+            line++;
+            lineStart = nextLineStart;
+        }
+
+        private void literal(int quoteLength, String quote) {
+            tokens.add(new Token(Token.LITERAL, quote, line, pos - lineStart));
+            pos += quoteLength;
+            int length = source.length();
+            while (pos < length) {
+                char c = source.charAt(pos);
+                if (c == '\\' && peek(1) != '\n') {
+                    pos += 2;
+                } else if (c == '\n') {
+                    newLine(++pos);
+                    if (quoteLength == 1) {
+                        // Unterminated literal, resume on the next line
+                        return;
+                    }
+                } else if (source.subSequence(pos, Math.min(length, pos + quoteLength)).toString().equals(quote)) {
+                    pos += quoteLength;
+                    return;
+                } else {
+                    pos++;
+                }
+            }
+        }
+
+        private void skipUntil(String end, int skip) {
+            pos += skip;
+            int length = source.length();
+            while (pos < length) {
+                if (source.charAt(pos) == end.charAt(0) && peek(1) == end.charAt(1)) {
+                    pos += end.length();
+                    return;
+                }
+                if (source.charAt(pos) == '\n') {
+                    newLine(pos + 1);
+                }
+                pos++;
+            }
+        }
+    }
+
+    /**
+     * Follows braces: a type body is opened by the first brace after a type keyword,
+     * a method is a name followed by parameters, optional throws clause and a body or semicolon, directly in a type body
+     */
+    private static final class Builder {
+
+        private final List<Token> tokens;
+
+        private final List<Declaration> types = new ArrayList<>();
+
+        private final List<Frame> frames = new ArrayList<>();
+
+        private Declaration pending;
+
+        private Builder(List<Token> tokens) {
+            this.tokens = tokens;
+        }
+
+        SourceIndex build() {
+            for (int i = 0; i < tokens.size(); i++) {
+                Token token = tokens.get(i);
+                Frame frame = frames.isEmpty() ? null : frames.get(frames.size() - 1);
+                boolean inTypeBody = frame != null && frame.typeBody;
+                if (token.kind == Token.IDENTIFIER && isTypeKeyword(i)) {
+                    pending = new Declaration(true, tokens.get(++i));
+                    attach(pending);
+                } else if (token.is("{")) {
+                    frames.add(new Frame(pending, pending != null && pending.type));
+                    pending = null;
+                } else if (token.is("}")) {
+                    if (frame != null) {
+                        frames.remove(frames.size() - 1);
+                        if (frame.declaration != null) {
+                            frame.declaration.end(token);
+                        }
+                    }
+                } else if (!inTypeBody) {
+                    continue;
+                } else if (token.is("=")) {
+                    frame.initializer = true;
+                } else if (token.is(";")) {
+                    frame.initializer = false;
+                    if (pending != null && !pending.type) {
+                        pending.end(token);
+                        pending = null;
+                    }
+                } else if (token.is("(")) {
+                    int method = !frame.initializer && pending == null ? method(i, frame.declaration) : i;
+                    // Annotation arguments, record components and initializer calls are skipped,
+                    // their '=' and braces are not the ones of the type body
+                    i = method == i ? close(i) : method;
+                }
+            }
+            return new SourceIndex(types);
+        }
+
+        private boolean isTypeKeyword(int i) {
+            if (i + 1 >= tokens.size() || tokens.get(i + 1).kind != Token.IDENTIFIER || (i > 0 && tokens.get(i - 1).is("."))) {
+                return false;
+            }
+            String text = tokens.get(i).text;
+            if ("class".equals(text) || "interface".equals(text) || "enum".equals(text)) {
+                return true;
+            }
+            // Contextual keyword, a record name is followed by components or type parameters
+            return "record".equals(text) && i + 2 < tokens.size() && (tokens.get(i + 2).is("(") || tokens.get(i + 2).is("<"));
+        }
+
+        /**
+         * Declares a method when the parenthesis at {@code open} starts parameters of a declaration.
+         * The name follows a return type, unless it is a constructor, which tells it from an enum constant
+         *
+         * @return index to continue from
+         */
+        private int method(int open, Declaration enclosing) {
+            if (open < 2 || tokens.get(open - 1).kind != Token.IDENTIFIER) {
+                return open;
+            }
+            Token before = tokens.get(open - 2);
+            if (!(before.kind == Token.IDENTIFIER && !before.is("new") || before.is(">") || before.is("]")
+                    || tokens.get(open - 1).text.equals(enclosing.name))) {
+                return open;
+            }
+            int close = close(open);
+            for (int i = close + 1; i < tokens.size(); i++) {
+                Token token = tokens.get(i);
+                if (token.is("{") || token.is(";")) {
+                    pending = new Declaration(false, tokens.get(open - 1));
+                    attach(pending);
+                    return close;
+                }
+                if (token.kind != Token.IDENTIFIER && !token.is(".") && !token.is(",") && !token.is("<") && !token.is(">")
+                        && !token.is("[") && !token.is("]") && !token.is("@")) {
+                    break;
+                }
+            }
+            return open;
+        }
+
+        /**
+         * @return index of the parenthesis closing the one at {@code open}, the last token when it isn't closed
+         */
+        private int close(int open) {
+            int depth = 0;
+            int close = open;
+            for (; close < tokens.size() - 1; close++) {
+                if (tokens.get(close).is("(")) {
+                    depth++;
+                } else if (tokens.get(close).is(")") && --depth == 0) {
+                    break;
+                }
+            }
+            return close;
+        }
+
+        private void attach(Declaration declaration) {
+            for (int i = frames.size() - 1; i >= 0; i--) {
+                if (frames.get(i).declaration != null) {
+                    frames.get(i).declaration.members.add(declaration);
+                    return;
+                }
+            }
+            types.add(declaration);
+        }
+    }
+
+    private static final class Frame {
+
+        final Declaration declaration;
+
+        final boolean typeBody;
+
+        boolean initializer;
+
+        Frame(Declaration declaration, boolean typeBody) {
+            this.declaration = declaration;
+            this.typeBody = typeBody;
+        }
+    }
+}
@@ -28,6 +28,8 @@ public class CoverageReport {
 
     private final AtomicInteger missed = new AtomicInteger(0);
 
+    private volatile CoverageReport newCode;
+
     public void add(int covered, int missed) {
         this.covered.getAndAdd(covered);
         this.missed.getAndAdd(missed);
@@ -35,6 +37,37 @@ public class CoverageReport {
         this.all.getAndAdd(missed);
     }
 
+    /**
+     * Adds totals of another report, new code included
+     */
+    public void add(CoverageReport report) {
+        add(report.getCovered(), report.getMissed());
+        if (report.newCode != null) {
+            addNewCode(report.newCode.getCovered(), report.newCode.getMissed());
+        }
+    }
+
+    /**
+     * Adds covered and missed lines among added ones
+     */
+    public void addNewCode(int covered, int missed) {
+        if (newCode == null) {
+            synchronized (this) {
+                if (newCode == null) {
+                    newCode = new CoverageReport();
+                }
+            }
+        }
+        newCode.add(covered, missed);
+    }
+
+    /**
+     * @return coverage of added lines, {@code null} when it wasn't computed
+     */
+    public CoverageReport getNewCode() {
+        return newCode;
+    }
+
     public int getAll() {
         return all.get();
     }
@@ -0,0 +1,126 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.stackdrive.sonarqube.jacoco;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.sonar.api.batch.InstantiationStrategy;
+import org.sonar.api.batch.ScannerSide;
+
+/**
+ * Directory listings shared by all report scans of an analysis.
+ * <p>
+ * Every module of a reactor scans overlapping trees for its reports, so listings are cached by real path
+ * and revalidated with the directory modification time: a cached directory costs one stat instead of
+ * a read of the directory and a stat of each entry.
+ * <p>
+ * Listings are not bounded, so that the whole tree stays cached for the next module; the cache lives as long
+ * as the analysis and is dropped with it.
+ */
+@ScannerSide
+@InstantiationStrategy(InstantiationStrategy.PER_BATCH)
+public class DirectoryListingCache {
+
+    private final Map<Path, Listing> listings = new HashMap<>();
+
+    /**
+     * Returns listing of the directory. Symbolic links to directories are not listed as directories,
+     * so children of a real path are real paths too
+     *
+     * @param dir real path of the directory
+     * @return directory listing, from cache when directory wasn't modified since
+     */
+    Listing list(Path dir) throws IOException {
+        FileTime lastModified = Files.readAttributes(dir, BasicFileAttributes.class).lastModifiedTime();
+        Listing listing;
+        synchronized (listings) {
+            listing = listings.get(dir);
+        }
+        if (listing != null && listing.lastModified.equals(lastModified)) {
+            return listing;
+        }
+        listing = read(dir, lastModified);
+        synchronized (listings) {
+            listings.put(dir, listing);
+        }
+        return listing;
+    }
+
+    private static Listing read(Path dir, FileTime lastModified) throws IOException {
+        List<String> directories = new ArrayList<>();
+        List<String> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+            for (Path entry : stream) {
+                BasicFileAttributes attrs;
+                try {
+                    attrs = Files.readAttributes(entry, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                } catch (IOException e) {
+                    // removed or unreadable meanwhile
+                    continue;
+                }
+                String name = entry.getFileName().toString();
+                if (attrs.isDirectory()) {
+                    directories.add(name);
+                } else if (attrs.isRegularFile() || (attrs.isSymbolicLink() && Files.isRegularFile(entry))) {
+                    files.add(name);
+                }
+            }
+        }
+        return new Listing(lastModified, directories.toArray(new String[0]), files.toArray(new String[0]));
+    }
+
+    static final class Listing {
+
+        private final FileTime lastModified;
+
+        private final String[] directories;
+
+        private final String[] files;
+
+        Listing(FileTime lastModified, String[] directories, String[] files) {
+            this.lastModified = lastModified;
+            this.directories = directories;
+            this.files = files;
+        }
+
+        /**
+         * Returns names of sub directories
+         */
+        String[] directories() {
+            return directories;
+        }
+
+        /**
+         * Returns names of regular files
+         */
+        String[] files() {
+            return files;
+        }
+    }
+}
@@ -0,0 +1,213 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.stackdrive.sonarqube.jacoco;
+
+import org.jacoco.core.analysis.Analyzer;
+import org.jacoco.core.analysis.CoverageBuilder;
+import org.jacoco.core.analysis.IClassCoverage;
+import org.jacoco.core.analysis.ICounter;
+import org.jacoco.core.analysis.ISourceFileCoverage;
+import org.jacoco.core.data.ExecutionDataStore;
+import org.jacoco.core.tools.ExecFileLoader;
+import org.stackdrive.sonarqube.concurrent.TimeBudget;
+import org.stackdrive.sonarqube.log.LogLimiter;
+import org.stackdrive.sonarqube.log.PluginLogger;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Computes coverage directly from JaCoCo execution data (<b>*.exec</b>) and module's compiled classes,
+ * so that <b>jacoco:report</b> doesn't have to be run just to produce jacoco.xml
+ */
+public class ExecReportImporter {
+
+    private static final PluginLogger LOG = PluginLogger.get(ExecReportImporter.class);
+
+    private static final LogLimiter CLASS_FILE_FAILURES = new LogLimiter(10, 60_000);
+
+    private static final String CLASS_FILE_SUFFIX = ".class";
+
+    private final int threads;
+
+    private final Predicate<String> sourceFilter;
+
+    private final TimeBudget budget;
+
+    public ExecReportImporter() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public ExecReportImporter(int threads) {
+        this(threads, null);
+    }
+
+    /**
+     * @param sourceFilter source files whose classes are counted, by path relative to the source root, {@code null} for all
+     */
+    public ExecReportImporter(int threads, Predicate<String> sourceFilter) {
+        this(threads, sourceFilter, TimeBudget.unlimited());
+    }
+
+    /**
+     * @param budget time budget, class files left once it's spent aren't analysed
+     */
+    public ExecReportImporter(int threads, Predicate<String> sourceFilter, TimeBudget budget) {
+        this.threads = Math.max(threads, 1);
+        this.sourceFilter = sourceFilter;
+        this.budget = budget;
+    }
+
+    /**
+     * Analyses class files of binary dirs against merged execution data of all exec files
+     *
+     * @param execPaths  execution data files
+     * @param binaryDirs compiled classes directories
+     * @return LINE coverage totals, same as the top level counter of XML report: classes are merged by source file,
+     * so that lines of nested and anonymous classes are counted once
+     */
+    public CoverageReport importReports(Collection<Path> execPaths, Collection<Path> binaryDirs) throws IOException {
+        ExecFileLoader loader = new ExecFileLoader();
+        for (Path execPath : execPaths) {
+            LOG.debug("StackDrive - Reading execution data '{}'", execPath);
+            loader.load(execPath.toFile());
+        }
+        ExecutionDataStore executionDataStore = loader.getExecutionDataStore();
+
+        List<Path> classFiles = new ArrayList<>();
+        for (Path binaryDir : binaryDirs) {
+            try (Stream<Path> stream = Files.walk(binaryDir)) {
+                classFiles.addAll(stream
+                        .filter(path -> path.getFileName().toString().endsWith(CLASS_FILE_SUFFIX))
+                        .filter(Files::isRegularFile)
+                        .collect(Collectors.toList()));
+            }
+        }
+
+        CoverageReport coverageReport = new CoverageReport();
+        if (classFiles.isEmpty()) {
+            LOG.info("StackDrive - No class files found in {}, execution data can't be analysed", binaryDirs);
+            return coverageReport;
+        }
+
+        int poolSize = Math.min(threads, classFiles.size());
+        int chunkSize = (classFiles.size() + poolSize - 1) / poolSize;
+        ExecutorService executor = Executors.newFixedThreadPool(poolSize);
+        try {
+            AtomicInteger failed = new AtomicInteger();
+            List<Future<CoverageBuilder>> futures = new ArrayList<>();
+            for (int from = 0; from < classFiles.size(); from += chunkSize) {
+                List<Path> chunk = classFiles.subList(from, Math.min(from + chunkSize, classFiles.size()));
+                futures.add(executor.submit(() -> analyse(executionDataStore, chunk, budget, failed)));
+            }
+            // classes of a source file may be in different chunks
+            CoverageBuilder merged = new CoverageBuilder();
+            for (Future<CoverageBuilder> future : futures) {
+                for (IClassCoverage classCoverage : future.get().getClasses()) {
+                    try {
+                        merged.visitCoverage(classCoverage);
+                    } catch (IllegalStateException e) {
+                        // Another class of the same name in a different binary dir
+                        failed.incrementAndGet();
+                        LOG.debug(CLASS_FILE_FAILURES, "StackDrive - Class '{}' could not be analysed. Error: {}", classCoverage.getName(), e);
+                    }
+                }
+            }
+            count(merged, sourceFilter, coverageReport);
+            if (failed.get() > 0) {
+                LOG.warn("StackDrive - {} of {} class file(s) could not be analysed and are not counted, see debug logs for details",
+                        failed.get(), classFiles.size());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Execution data analysis was interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Failed to analyse execution data", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        LOG.info("StackDrive - Analysed {} class file(s): covered {} missed {}", classFiles.size(), coverageReport.getCovered(), coverageReport.getMissed());
+        return coverageReport;
+    }
+
+    /**
+     * Analyses a chunk of class files. {@link CoverageBuilder} isn't thread safe, so every chunk gets its own one,
+     * while the execution data store is only read
+     *
+     * @param failed number of class files which could not be analysed
+     * @return coverage of the analysed classes
+     */
+    private static CoverageBuilder analyse(ExecutionDataStore executionDataStore, List<Path> classFiles, TimeBudget budget,
+                                           AtomicInteger failed) {
+        CoverageBuilder coverageBuilder = new CoverageBuilder();
+        Analyzer analyzer = new Analyzer(executionDataStore, coverageBuilder);
+        for (int i = 0; i < classFiles.size(); i++) {
+            if (budget.isExpired()) {
+                budget.skip("class files", classFiles.size() - i);
+                break;
+            }
+            Path classFile = classFiles.get(i);
+            try (InputStream input = Files.newInputStream(classFile)) {
+                analyzer.analyzeClass(input, classFile.toString());
+            } catch (IOException | RuntimeException e) {
+                // An unsupported class file version must not lose the coverage of the other classes
+                failed.incrementAndGet();
+                LOG.debug(CLASS_FILE_FAILURES, "StackDrive - Class file '{}' could not be analysed. Error: {}", classFile, e);
+            }
+        }
+        return coverageBuilder;
+    }
+
+    /**
+     * Adds LINE counters of source files, and of classes without one like the XML report does
+     */
+    private static void count(CoverageBuilder coverageBuilder, Predicate<String> sourceFilter, CoverageReport coverageReport) {
+        for (ISourceFileCoverage sourceFile : coverageBuilder.getSourceFiles()) {
+            String packageName = sourceFile.getPackageName();
+            String sourcePath = packageName.isEmpty() ? sourceFile.getName() : packageName + "/" + sourceFile.getName();
+            if (sourceFilter == null || sourceFilter.test(sourcePath)) {
+                add(sourceFile.getLineCounter(), coverageReport);
+            }
+        }
+        if (sourceFilter == null) {
+            for (IClassCoverage classCoverage : coverageBuilder.getClasses()) {
+                if (classCoverage.getSourceFileName() == null) {
+                    add(classCoverage.getLineCounter(), coverageReport);
+                }
+            }
+        }
+    }
+
+    private static void add(ICounter lineCounter, CoverageReport coverageReport) {
+        coverageReport.add(lineCounter.getCoveredCount(), lineCounter.getMissedCount());
+    }
+}
@@ -18,21 +18,89 @@
  */
 package org.stackdrive.sonarqube.jacoco;
 
-import org.sonar.api.batch.sensor.SensorContext;
-import org.sonar.api.utils.log.Logger;
-import org.sonar.api.utils.log.Loggers;
+import org.stackdrive.sonarqube.concurrent.IoExecutors;
+import org.stackdrive.sonarqube.concurrent.TimeBudget;
+import org.stackdrive.sonarqube.log.LogLimiter;
+import org.stackdrive.sonarqube.log.Phase;
+import org.stackdrive.sonarqube.log.PluginLogger;
 
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+import java.util.function.Predicate;
 
 public class JacocoReportImporter {
 
-    private static final Logger LOG = Loggers.get(JacocoReportImporter.class);
+    private static final PluginLogger LOG = PluginLogger.get(JacocoReportImporter.class);
 
-    public CoverageReport analyse(SensorContext context) {
-        ReportPathsProvider reportPathsProvider = new ReportPathsProvider(context);
+    private static final LogLimiter INVALID_COUNTERS = new LogLimiter(10, 60_000);
+
+    private static final int DEFAULT_IO_THREADS = 4;
+
+    private final int threads;
+
+    private final int ioThreads;
+
+    private final Predicate<String> sourceFilter;
+
+    private final Function<String, int[]> addedLines;
+
+    private final TimeBudget budget;
+
+    public JacocoReportImporter() {
+        this(Runtime.getRuntime().availableProcessors(), DEFAULT_IO_THREADS);
+    }
+
+    /**
+     * @param threads   threads analysing class files of execution data
+     * @param ioThreads threads reading XML reports, see {@link IoExecutors}
+     */
+    public JacocoReportImporter(int threads, int ioThreads) {
+        this(threads, ioThreads, null);
+    }
+
+    /**
+     * @param sourceFilter source files whose coverage is imported, by path relative to the source root, {@code null} for all
+     */
+    public JacocoReportImporter(int threads, int ioThreads, Predicate<String> sourceFilter) {
+        this(threads, ioThreads, sourceFilter, null);
+    }
+
+    /**
+     * @param sourceFilter source files whose coverage is imported, by path relative to the source root, {@code null} for all
+     * @param addedLines   added line ranges by source file, coverage of added lines is computed from XML reports when set
+     */
+    public JacocoReportImporter(int threads, int ioThreads, Predicate<String> sourceFilter, Function<String, int[]> addedLines) {
+        this(threads, ioThreads, sourceFilter, addedLines, TimeBudget.unlimited());
+    }
+
+    /**
+     * @param budget time budget, reports and class files left once it's spent are skipped
+     */
+    public JacocoReportImporter(int threads, int ioThreads, Predicate<String> sourceFilter, Function<String, int[]> addedLines,
+                                TimeBudget budget) {
+        this.threads = threads;
+        this.ioThreads = ioThreads;
+        this.sourceFilter = sourceFilter;
+        this.addedLines = addedLines;
+        this.budget = budget;
+    }
+
+    /**
+     * Imports coverage of the module, safe to run off the sensor thread
+     *
+     * @param reportPathsProvider report locations, created on the sensor thread
+     */
+    public CoverageReport analyse(ReportPathsProvider reportPathsProvider) {
         return importReports(reportPathsProvider);
     }
 
@@ -41,23 +109,67 @@ public class JacocoReportImporter {
 
         CoverageReport coverageReport = new CoverageReport();
         if (reportPaths.isEmpty()) {
-            LOG.info("StackDrive - No report imported, no coverage information will be imported by JaCoCo XML Report Importer");
-            return coverageReport;
+            return importExecReports(reportPathsProvider);
         }
 
         LOG.info("StackDrive - Importing {} report(s). Turn your logs in debug mode in order to see the exhaustive list.", reportPaths.size());
-        for (Path reportPath : reportPaths) {
-            LOG.info("StackDrive - Reading report '{}'", reportPath);
-            try {
-                final CoverageReport report = importReport(new XmlReportParser(reportPath));
-                coverageReport.add(report.getCovered(), report.getMissed());
-            } catch (Exception e) {
-                LOG.warn("StackDrive - Coverage report '{}' could not be read/imported. Error: {}", reportPath, e);
+        if (addedLines != null) {
+            coverageReport.addNewCode(0, 0);
+        }
+        // Reports are read concurrently, results are added in reports order
+        ExecutorService executor = IoExecutors.newExecutor("stackdrive-jacoco-io", Math.min(ioThreads, reportPaths.size()));
+        try (Phase phase = LOG.phase("Coverage import")) {
+            List<Future<CoverageReport>> reports = new ArrayList<>();
+            for (Path reportPath : reportPaths) {
+                reports.add(executor.submit(() -> {
+                    LOG.debug("StackDrive - Reading report '{}'", reportPath);
+                    return importReport(new XmlReportParser(reportPath, sourceFilter, addedLines));
+                }));
+            }
+            Iterator<Path> reportPathIterator = reportPaths.iterator();
+            for (Future<CoverageReport> future : reports) {
+                Path reportPath = reportPathIterator.next();
+                try {
+                    final CoverageReport report = future.get(budget.remainingMillis(), TimeUnit.MILLISECONDS);
+                    coverageReport.add(report);
+                    phase.count("reports");
+                } catch (ExecutionException e) {
+                    LOG.warn("StackDrive - Coverage report '{}' could not be read/imported. Error: {}", reportPath, e.getCause());
+                } catch (TimeoutException e) {
+                    future.cancel(true);
+                    budget.skip("coverage reports", 1);
+                }
             }
+            phase.add("covered", coverageReport.getCovered());
+            phase.add("missed", coverageReport.getMissed());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOG.warn("StackDrive - Coverage reports import was interrupted");
+        } finally {
+            executor.shutdownNow();
         }
         return coverageReport;
     }
 
+    /**
+     * Falls back to execution data when no XML report was generated
+     */
+    CoverageReport importExecReports(ReportPathsProvider reportPathsProvider) {
+        Collection<Path> execPaths = reportPathsProvider.getExecPaths();
+        if (execPaths.isEmpty()) {
+            LOG.info("StackDrive - No report imported, no coverage information will be imported by JaCoCo XML Report Importer");
+            return new CoverageReport();
+        }
+
+        LOG.info("StackDrive - No XML report found, analysing {} execution data file(s)", execPaths.size());
+        try {
+            return new ExecReportImporter(threads, sourceFilter, budget).importReports(execPaths, reportPathsProvider.getBinaryDirs());
+        } catch (Exception e) {
+            LOG.warn("StackDrive - Execution data '{}' could not be read/imported. Error: {}", execPaths, e);
+            return new CoverageReport();
+        }
+    }
+
     CoverageReport importReport(XmlReportParser reportParser) {
         List<XmlReportParser.Counter> counters = reportParser.parse();
 
@@ -68,11 +180,16 @@ public class JacocoReportImporter {
                     final int covered = Math.max(counter.getCoveredLines(), 0);
                     final int missed = Math.max(counter.getMissedLines(), 0);
                     coverageReport.add(covered, missed);
-                    LOG.info("StackDrive - Import report: covered {} missed {}", coverageReport.getCovered(), coverageReport.getMissed());
+                    if (LOG.isTraceEnabled()) {
+                        LOG.trace("StackDrive - Import report: covered {} missed {}", coverageReport.getCovered(), coverageReport.getMissed());
+                    }
                 }
             } catch (IllegalStateException e) {
-                LOG.warn("StackDrive - Cannot import coverage information, coverage data is invalid. Error: {}", e);
+                LOG.warn(INVALID_COUNTERS, "StackDrive - Cannot import coverage information, coverage data is invalid. Error: {}", e);
             }
+        if (addedLines != null) {
+            coverageReport.addNewCode(reportParser.getNewCode().getCovered(), reportParser.getNewCode().getMissed());
+        }
         return coverageReport;
     }
 }
\ No newline at end of file
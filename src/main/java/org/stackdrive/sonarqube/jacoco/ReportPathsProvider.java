@@ -24,6 +24,7 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -32,33 +33,78 @@ import org.sonar.api.batch.sensor.SensorContext;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
 
-class ReportPathsProvider {
+/**
+ * Coverage report locations of a module. Settings are read on creation, on the sensor thread,
+ * so that reports can be looked up by background tasks
+ */
+public class ReportPathsProvider {
     private static final Logger LOG = Loggers.get(ReportPathsProvider.class);
 
     private static final String[] DEFAULT_PATHS = {"target/site/jacoco/jacoco.xml", "target/site/jacoco-it/jacoco.xml", "build/reports/jacoco/test/jacocoTestReport.xml"};
     static final String REPORT_PATHS_PROPERTY_KEY = "sonar.coverage.jacoco.xmlReportPaths";
 
-    private final SensorContext context;
+    private static final String[] DEFAULT_EXEC_PATHS = {"target/jacoco.exec", "target/jacoco-it.exec", "build/jacoco/test.exec"};
+    static final String EXEC_PATHS_PROPERTY_KEY = "sonar.jacoco.reportPaths";
+
+    private static final String[] DEFAULT_BINARY_DIRS = {"target/classes", "build/classes/java/main"};
+    static final String BINARY_DIRS_PROPERTY_KEY = "sonar.java.binaries";
+
+    private final Path baseDir;
+
+    private final String[] reportPatterns;
+
+    private final String[] execPatterns;
+
+    private final String[] binaryDirs;
 
-    ReportPathsProvider(SensorContext context) {
-        this.context = context;
+    private final DirectoryListingCache listingCache;
+
+    /**
+     * @param listingCache directory listings shared by the modules of the analysis
+     */
+    public ReportPathsProvider(SensorContext context, DirectoryListingCache listingCache) {
+        this.listingCache = listingCache;
+        this.baseDir = context.fileSystem().baseDir().toPath().toAbsolutePath();
+        this.reportPatterns = context.config().getStringArray(REPORT_PATHS_PROPERTY_KEY);
+        this.execPatterns = context.config().getStringArray(EXEC_PATHS_PROPERTY_KEY);
+        this.binaryDirs = context.config().getStringArray(BINARY_DIRS_PROPERTY_KEY);
     }
 
     Collection<Path> getPaths() {
-        Path baseDir = context.fileSystem().baseDir().toPath().toAbsolutePath();
+        return getPaths(REPORT_PATHS_PROPERTY_KEY, reportPatterns, DEFAULT_PATHS);
+    }
+
+    /**
+     * Returns JaCoCo execution data files (<b>*.exec</b>), used when no XML report was generated
+     */
+    Collection<Path> getExecPaths() {
+        return getPaths(EXEC_PATHS_PROPERTY_KEY, execPatterns, DEFAULT_EXEC_PATHS);
+    }
+
+    /**
+     * Returns module's compiled classes directories, needed to analyse execution data
+     */
+    Collection<Path> getBinaryDirs() {
+        return Stream.of(binaryDirs.length == 0 ? DEFAULT_BINARY_DIRS : binaryDirs)
+                .filter(dir -> !dir.isEmpty())
+                .map(baseDir::resolve)
+                .filter(Files::isDirectory)
+                .collect(Collectors.toSet());
+    }
 
-        List<String> patternPathList = Stream.of(context.config().getStringArray(REPORT_PATHS_PROPERTY_KEY))
+    private Collection<Path> getPaths(String propertyKey, String[] patterns, String[] defaultPaths) {
+        List<String> patternPathList = Stream.of(patterns)
                 .filter(pattern -> !pattern.isEmpty())
                 .collect(Collectors.toList());
 
         Set<Path> reportPaths = new HashSet<>();
         if (!patternPathList.isEmpty()) {
-            for (String patternPath : patternPathList) {
-                List<Path> paths = WildcardPatternFileScanner.scan(baseDir, patternPath);
-                if (paths.isEmpty() && patternPathList.size() > 1) {
-                    LOG.info("Coverage report doesn't exist for pattern: '{}'", patternPath);
+            Map<String, List<Path>> pathsByPattern = WildcardPatternFileScanner.scan(baseDir, patternPathList, listingCache);
+            for (Map.Entry<String, List<Path>> entry : pathsByPattern.entrySet()) {
+                if (entry.getValue().isEmpty() && patternPathList.size() > 1) {
+                    LOG.info("Coverage report doesn't exist for pattern: '{}'", entry.getKey());
                 }
-                reportPaths.addAll(paths);
+                reportPaths.addAll(entry.getValue());
             }
         }
 
@@ -66,12 +112,12 @@ class ReportPathsProvider {
             return reportPaths;
         } else {
             if (!patternPathList.isEmpty()) {
-                LOG.warn("No coverage report can be found with sonar.coverage.jacoco.xmlReportPaths='{}'. Using default locations: {}",
-                        String.join(",", patternPathList), String.join(",", DEFAULT_PATHS));
+                LOG.warn("No coverage report can be found with {}='{}'. Using default locations: {}",
+                        propertyKey, String.join(",", patternPathList), String.join(",", defaultPaths));
             } else {
-                LOG.info("'sonar.coverage.jacoco.xmlReportPaths' is not defined. Using default locations: {}", String.join(",", DEFAULT_PATHS));
+                LOG.info("'{}' is not defined. Using default locations: {}", propertyKey, String.join(",", defaultPaths));
             }
-            return Arrays.stream(DEFAULT_PATHS)
+            return Arrays.stream(defaultPaths)
                     .map(baseDir::resolve)
                     .filter(Files::isRegularFile)
                     .collect(Collectors.toSet());
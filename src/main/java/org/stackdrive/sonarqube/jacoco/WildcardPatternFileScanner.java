@@ -24,9 +24,14 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.stream.Stream;
+import java.util.Map;
+import java.util.Set;
 
 import org.sonar.api.internal.google.common.annotations.VisibleForTesting;
 import org.sonar.api.utils.WildcardPattern;
@@ -41,30 +46,63 @@ public final class WildcardPatternFileScanner {
 
     private static final String PATH_MATCHER_SPECIAL_CHAR = "*?";
 
+    private static final String ANY_DIRECTORIES = "**";
+
+    /**
+     * Directories which never contain coverage reports, skipped unless a pattern explicitly points into them
+     */
+    private static final Set<String> PRUNED_DIRECTORIES = new HashSet<>(Arrays.asList(".git", ".svn", ".hg", "node_modules"));
+
     private WildcardPatternFileScanner() {
         // utility class
     }
 
     public static List<Path> scan(Path baseDirectory, String patternPath) {
-        String unixLikePatternPath = toUnixLikePath(patternPath);
-        int specialCharIndex = indexOfMatcherSpecialChar(unixLikePatternPath);
-        if (specialCharIndex == -1) {
-            return scanNonWildcardPattern(baseDirectory, unixLikePatternPath);
-        } else {
-            // For performance reason, we don't want to scan recursively all files in baseDirectory
-            // when patternPath start with "none wildcard" subfolder names. For example,
-            // scanWildcardPattern("/base", "sub1/sub2/**/file*.xml") is converted into
-            // scanWildcardPattern("/base/sub1/sub2", "**/file*.xml")
-            int additionalBaseDirectoryPart = unixLikePatternPath.lastIndexOf('/', specialCharIndex);
-            if (additionalBaseDirectoryPart != -1) {
-                Path additionalBaseDirectory = toFileSystemPath(unixLikePatternPath.substring(0, additionalBaseDirectoryPart + 1));
-                String remainingWildcardPart = unixLikePatternPath.substring(additionalBaseDirectoryPart + 1);
-                Path moreSpecificBaseDirectory = baseDirectory.resolve(additionalBaseDirectory);
-                return scanWildcardPattern(moreSpecificBaseDirectory, remainingWildcardPart);
+        return scan(baseDirectory, Collections.singletonList(patternPath)).get(patternPath);
+    }
+
+    public static Map<String, List<Path>> scan(Path baseDirectory, Collection<String> patternPaths) {
+        return scan(baseDirectory, patternPaths, new DirectoryListingCache());
+    }
+
+    /**
+     * Scans all patterns at once: every directory is visited at most once, whatever the number of patterns.
+     * Directory listings come from the cache, shared with the scans of other modules
+     *
+     * @param baseDirectory base directory of relative patterns
+     * @param patternPaths  patterns to scan
+     * @param listingCache  directory listings of the analysis
+     * @return found paths by pattern, in patterns order
+     */
+    public static Map<String, List<Path>> scan(Path baseDirectory, Collection<String> patternPaths, DirectoryListingCache listingCache) {
+        Map<String, List<Path>> result = new LinkedHashMap<>();
+        List<CompiledPattern> wildcardPatterns = new ArrayList<>();
+        for (String patternPath : patternPaths) {
+            String unixLikePatternPath = toUnixLikePath(patternPath);
+            int specialCharIndex = indexOfMatcherSpecialChar(unixLikePatternPath);
+            if (specialCharIndex == -1) {
+                result.put(patternPath, scanNonWildcardPattern(baseDirectory, unixLikePatternPath));
             } else {
-                return scanWildcardPattern(baseDirectory, unixLikePatternPath);
+                result.put(patternPath, new ArrayList<>());
+                // For performance reason, we don't want to scan recursively all files in baseDirectory
+                // when patternPath start with "none wildcard" subfolder names. For example,
+                // scanWildcardPattern("/base", "sub1/sub2/**/file*.xml") is converted into
+                // scanWildcardPattern("/base/sub1/sub2", "**/file*.xml")
+                int additionalBaseDirectoryPart = unixLikePatternPath.lastIndexOf('/', specialCharIndex);
+                if (additionalBaseDirectoryPart != -1) {
+                    Path additionalBaseDirectory = toFileSystemPath(unixLikePatternPath.substring(0, additionalBaseDirectoryPart + 1));
+                    String remainingWildcardPart = unixLikePatternPath.substring(additionalBaseDirectoryPart + 1);
+                    Path moreSpecificBaseDirectory = baseDirectory.resolve(additionalBaseDirectory);
+                    compile(moreSpecificBaseDirectory, remainingWildcardPart, patternPath, wildcardPatterns);
+                } else {
+                    compile(baseDirectory, unixLikePatternPath, patternPath, wildcardPatterns);
+                }
             }
         }
+        for (Path root : walkRoots(wildcardPatterns)) {
+            scanWildcardPatterns(root, 0, wildcardPatterns, listingCache, result);
+        }
+        return result;
     }
 
     private static List<Path> scanNonWildcardPattern(Path baseDirectory, String unixLikePath) {
@@ -75,28 +113,79 @@ public final class WildcardPatternFileScanner {
         return Collections.emptyList();
     }
 
-    private static List<Path> scanWildcardPattern(Path baseDirectory, String unixLikePatternPath) {
+    private static void compile(Path baseDirectory, String unixLikePatternPath, String patternPath, List<CompiledPattern> compiledPatterns) {
         if (!Files.exists(baseDirectory)) {
-            return Collections.emptyList();
+            return;
         }
         try {
             Path absoluteBaseDirectory = baseDirectory.toRealPath();
             if (absoluteBaseDirectory.equals(absoluteBaseDirectory.getRoot())) {
                 throw new IOException("For performance reason, wildcard pattern search is not possible from filesystem root");
             }
-            List<Path> paths = new ArrayList<>();
-            WildcardPattern matcher = WildcardPattern.create(toUnixLikePath(absoluteBaseDirectory.toString()) + "/" + unixLikePatternPath);
-            try (Stream<Path> stream = Files.walk(absoluteBaseDirectory, SEARCH_MAX_DEPTH)) {
-                stream
-                        .filter(Files::isRegularFile)
-                        .filter(path -> matcher.match(toUnixLikePath(path.toString())))
-                        .forEach(paths::add);
-            }
-            return paths;
+            compiledPatterns.add(new CompiledPattern(patternPath, absoluteBaseDirectory, unixLikePatternPath));
         } catch (IOException | RuntimeException e) {
             LOG.warn("Failed to get Jacoco report paths: Scanning '" + baseDirectory + "' with pattern '" + unixLikePatternPath + "'" +
                     " threw a " + e.getClass().getSimpleName() + ": " + e.getMessage());
-            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * Returns outermost pattern base directories, so that nested ones aren't walked twice
+     */
+    private static List<Path> walkRoots(List<CompiledPattern> compiledPatterns) {
+        List<Path> roots = new ArrayList<>();
+        for (CompiledPattern pattern : compiledPatterns) {
+            boolean nested = false;
+            for (CompiledPattern other : compiledPatterns) {
+                if (!other.baseDirectory.equals(pattern.baseDirectory) && pattern.baseDirectory.startsWith(other.baseDirectory)) {
+                    nested = true;
+                    break;
+                }
+            }
+            if (!nested && !roots.contains(pattern.baseDirectory)) {
+                roots.add(pattern.baseDirectory);
+            }
+        }
+        return roots;
+    }
+
+    private static void scanWildcardPatterns(Path dir, int depth, List<CompiledPattern> compiledPatterns,
+                                             DirectoryListingCache listingCache, Map<String, List<Path>> result) {
+        DirectoryListingCache.Listing listing;
+        try {
+            listing = listingCache.list(dir);
+        } catch (IOException | RuntimeException e) {
+            LOG.debug("Failed to get Jacoco report paths: can't list '{}': {}", dir, e.getMessage());
+            return;
+        }
+
+        List<CompiledPattern> dirPatterns = new ArrayList<>();
+        for (CompiledPattern pattern : compiledPatterns) {
+            if (pattern.mayContain(dir)) {
+                dirPatterns.add(pattern);
+            }
+        }
+        for (String name : listing.files()) {
+            Path file = dir.resolve(name);
+            String unixLikePath = toUnixLikePath(file.toString());
+            for (CompiledPattern pattern : dirPatterns) {
+                if (pattern.matcher.match(unixLikePath)) {
+                    result.get(pattern.patternPath).add(file);
+                }
+            }
+        }
+
+        if (depth + 1 >= SEARCH_MAX_DEPTH) {
+            return;
+        }
+        for (String name : listing.directories()) {
+            Path subDir = dir.resolve(name);
+            for (CompiledPattern pattern : dirPatterns) {
+                if (pattern.mayContain(subDir)) {
+                    scanWildcardPatterns(subDir, depth + 1, compiledPatterns, listingCache, result);
+                    break;
+                }
+            }
         }
     }
 
@@ -120,4 +209,57 @@ public final class WildcardPatternFileScanner {
         return -1;
     }
 
+    /**
+     * Wildcard pattern bound to its literal base directory
+     */
+    private static final class CompiledPattern {
+
+        private final String patternPath;
+
+        private final Path baseDirectory;
+
+        private final WildcardPattern matcher;
+
+        /**
+         * Number of directory levels below base directory the pattern can match, -1 when pattern contains '**'
+         */
+        private final int maxDirectoryDepth;
+
+        CompiledPattern(String patternPath, Path baseDirectory, String unixLikePatternPath) {
+            this.patternPath = patternPath;
+            this.baseDirectory = baseDirectory;
+            this.matcher = WildcardPattern.create(toUnixLikePath(baseDirectory.toString()) + "/" + unixLikePatternPath);
+            if (unixLikePatternPath.contains(ANY_DIRECTORIES)) {
+                this.maxDirectoryDepth = -1;
+            } else {
+                int separators = 0;
+                for (int i = 0; i < unixLikePatternPath.length(); i++) {
+                    if (unixLikePatternPath.charAt(i) == '/') {
+                        separators++;
+                    }
+                }
+                this.maxDirectoryDepth = separators;
+            }
+        }
+
+        /**
+         * Returns false when no file below the directory can match the pattern
+         */
+        boolean mayContain(Path dir) {
+            if (baseDirectory.startsWith(dir)) {
+                // ancestor of the base directory, walk goes down to it
+                return true;
+            }
+            if (!dir.startsWith(baseDirectory)) {
+                return false;
+            }
+            Path relativeDir = baseDirectory.relativize(dir);
+            for (Path name : relativeDir) {
+                if (PRUNED_DIRECTORIES.contains(name.toString())) {
+                    return false;
+                }
+            }
+            return maxDirectoryDepth == -1 || relativeDir.getNameCount() <= maxDirectoryDepth;
+        }
+    }
 }
@@ -25,6 +25,8 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Function;
+import java.util.function.Predicate;
 import java.util.function.Supplier;
 import javax.xml.stream.XMLInputFactory;
 import javax.xml.stream.XMLStreamConstants;
@@ -37,8 +39,44 @@ public class XmlReportParser {
 
     private static final String COLUMN = " column ";
 
+    /**
+     * Source files whose counters are taken, by path relative to the source root, {@code null} for report totals
+     */
+    private final Predicate<String> sourceFilter;
+
+    /**
+     * Flattened {@code [start, end)} ranges of added lines by source file, {@code null} when new code isn't computed
+     */
+    private final Function<String, int[]> addedLines;
+
+    private CoverageReport newCode = new CoverageReport();
+
     public XmlReportParser(Path xmlReportPath) {
+        this(xmlReportPath, null);
+    }
+
+    /**
+     * @param sourceFilter source files whose counters are taken instead of report totals
+     */
+    public XmlReportParser(Path xmlReportPath, Predicate<String> sourceFilter) {
+        this(xmlReportPath, sourceFilter, null);
+    }
+
+    /**
+     * @param sourceFilter source files whose counters are taken instead of report totals
+     * @param addedLines   added line ranges by source file, see {@link #getNewCode()}
+     */
+    public XmlReportParser(Path xmlReportPath, Predicate<String> sourceFilter, Function<String, int[]> addedLines) {
         this.xmlReportPath = xmlReportPath;
+        this.sourceFilter = sourceFilter;
+        this.addedLines = addedLines;
+    }
+
+    /**
+     * Returns covered and missed added lines met by the last {@link #parse()}, lines without code aren't counted
+     */
+    public CoverageReport getNewCode() {
+        return newCode;
     }
 
     public List<Counter> parse() {
@@ -56,6 +94,15 @@ public class XmlReportParser {
 
             String packageName = null;
 
+            boolean sourceFileTaken = false;
+
+            // Added lines of the current source file and the first range which may contain next lines,
+            // lines come in ascending order so ranges are walked once
+            int[] ranges = null;
+            int rangeIndex = 0;
+
+            newCode = new CoverageReport();
+
             while (true) {
                 int event = parser.next();
 
@@ -66,13 +113,35 @@ public class XmlReportParser {
                     String element = parser.getLocalName();
                     if (element.equals("package")) {
                         packageName = null;
+                    } else if (element.equals("sourcefile")) {
+                        sourceFileTaken = false;
+                        ranges = null;
                     }
                 } else if (event == XMLStreamConstants.START_ELEMENT) {
                     String element = parser.getLocalName();
 
                     if (element.equals("package")) {
                         packageName = getStringAttr(parser, "name", () -> "for a 'package' at line " + parser.getLocation().getLineNumber() + COLUMN + parser.getLocation().getColumnNumber());
-                    } else if (element.equals("counter") && packageName == null) {
+                    } else if (element.equals("sourcefile") && packageName != null && (sourceFilter != null || addedLines != null)) {
+                        String sourceFileName = getStringAttr(parser, "name", () -> "for a 'sourcefile' at line " + parser.getLocation().getLineNumber() + COLUMN + parser.getLocation().getColumnNumber());
+                        String sourcePath = packageName.isEmpty() ? sourceFileName : packageName + "/" + sourceFileName;
+                        sourceFileTaken = sourceFilter != null && sourceFilter.test(sourcePath);
+                        ranges = addedLines == null ? null : addedLines.apply(sourcePath);
+                        rangeIndex = 0;
+                    } else if (element.equals("line") && ranges != null) {
+                        Supplier<String> errorCtx = () -> "for a 'line' at line " + parser.getLocation().getLineNumber() + COLUMN + parser.getLocation().getColumnNumber();
+                        int nr = getIntAttr(parser, "nr", errorCtx);
+                        while (rangeIndex < ranges.length && ranges[rangeIndex + 1] <= nr) {
+                            rangeIndex += 2;
+                        }
+                        if (rangeIndex < ranges.length && ranges[rangeIndex] <= nr) {
+                            if (getOptionalIntAttr(parser, "ci", errorCtx) > 0) {
+                                newCode.add(1, 0);
+                            } else if (getOptionalIntAttr(parser, "mi", errorCtx) > 0) {
+                                newCode.add(0, 1);
+                            }
+                        }
+                    } else if (element.equals("counter") && (sourceFilter == null ? packageName == null : sourceFileTaken)) {
 
                         Supplier<String> errorCtx = () -> "for the sourcefile '" + xmlReportPath.getFileName() + "' at line "
                                 + parser.getLocation().getLineNumber() + COLUMN + parser.getLocation().getColumnNumber();
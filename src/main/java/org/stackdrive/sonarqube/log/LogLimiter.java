@@ -0,0 +1,67 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.stackdrive.sonarqube.log;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rate limit of a log call site: a number of messages per interval, messages over it are counted and
+ * the count is reported by the next logged message. Meant to be a constant of the call site
+ */
+public final class LogLimiter {
+
+    private final int maxMessages;
+
+    private final long intervalNanos;
+
+    private long intervalStart;
+
+    private int messages;
+
+    private long suppressed;
+
+    /**
+     * @param maxMessages    messages logged per interval at most
+     * @param intervalMillis interval length
+     */
+    public LogLimiter(int maxMessages, long intervalMillis) {
+        this.maxMessages = maxMessages;
+        this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(intervalMillis);
+        this.intervalStart = System.nanoTime();
+    }
+
+    /**
+     * @return -1 when the message is suppressed, otherwise number of messages suppressed since the last logged one
+     */
+    synchronized long acquire() {
+        long now = System.nanoTime();
+        if (now - intervalStart >= intervalNanos) {
+            intervalStart = now;
+            messages = 0;
+        }
+        if (messages >= maxMessages) {
+            suppressed++;
+            return -1;
+        }
+        messages++;
+        long count = suppressed;
+        suppressed = 0;
+        return count;
+    }
+}
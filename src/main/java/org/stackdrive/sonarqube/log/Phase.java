@@ -0,0 +1,63 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.stackdrive.sonarqube.log;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Phase of the analysis counting what it handles, closing it logs one line with the counts and the time spent.
+ * Counting is thread safe
+ */
+public final class Phase implements AutoCloseable {
+
+    private final PluginLogger logger;
+
+    private final String name;
+
+    private final long start = System.nanoTime();
+
+    private final Map<String, Long> counts = new LinkedHashMap<>();
+
+    Phase(PluginLogger logger, String name) {
+        this.logger = logger;
+        this.name = name;
+    }
+
+    public void count(String counter) {
+        add(counter, 1);
+    }
+
+    public synchronized void add(String counter, long amount) {
+        counts.merge(counter, amount, Long::sum);
+    }
+
+    @Override
+    public void close() {
+        StringJoiner summary = new StringJoiner(", ");
+        synchronized (this) {
+            for (Map.Entry<String, Long> count : counts.entrySet()) {
+                summary.add(count.getKey() + "=" + count.getValue());
+            }
+        }
+        logger.info("StackDrive - {} done in {} ms: {}", name, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), summary);
+    }
+}
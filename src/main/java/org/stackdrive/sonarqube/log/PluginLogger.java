@@ -0,0 +1,204 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.stackdrive.sonarqube.log;
+
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+
+import java.util.Arrays;
+import java.util.function.Supplier;
+
+/**
+ * Logger of the plugin over the sonar one. Messages of disabled levels aren't formatted, and with up to two
+ * arguments no varargs array is allocated either. Primitive arguments are still boxed by the caller, so loops
+ * pass a {@link Supplier} or check the level first. Messages of loops go through a {@link LogLimiter}
+ * of the call site, and phases log one summary line with their counts and time instead of a line per item
+ */
+public final class PluginLogger {
+
+    private final Logger logger;
+
+    private PluginLogger(Logger logger) {
+        this.logger = logger;
+    }
+
+    public static PluginLogger get(Class<?> clazz) {
+        return new PluginLogger(Loggers.get(clazz));
+    }
+
+    public boolean isDebugEnabled() {
+        return logger.isDebugEnabled();
+    }
+
+    public boolean isTraceEnabled() {
+        return logger.isTraceEnabled();
+    }
+
+    public void trace(String message) {
+        if (logger.isTraceEnabled()) {
+            logger.trace(message);
+        }
+    }
+
+    public void trace(String format, Object arg) {
+        if (logger.isTraceEnabled()) {
+            logger.trace(format, arg);
+        }
+    }
+
+    public void trace(String format, Object arg1, Object arg2) {
+        if (logger.isTraceEnabled()) {
+            logger.trace(format, arg1, arg2);
+        }
+    }
+
+    public void trace(String format, Object... args) {
+        if (logger.isTraceEnabled()) {
+            logger.trace(format, args);
+        }
+    }
+
+    /**
+     * @param message message built only when trace is enabled
+     */
+    public void trace(Supplier<String> message) {
+        if (logger.isTraceEnabled()) {
+            logger.trace(message.get());
+        }
+    }
+
+    public void debug(String message) {
+        if (logger.isDebugEnabled()) {
+            logger.debug(message);
+        }
+    }
+
+    public void debug(String format, Object arg) {
+        if (logger.isDebugEnabled()) {
+            logger.debug(format, arg);
+        }
+    }
+
+    public void debug(String format, Object arg1, Object arg2) {
+        if (logger.isDebugEnabled()) {
+            logger.debug(format, arg1, arg2);
+        }
+    }
+
+    public void debug(String format, Object... args) {
+        if (logger.isDebugEnabled()) {
+            logger.debug(format, args);
+        }
+    }
+
+    public void debug(String message, Throwable thrown) {
+        if (logger.isDebugEnabled()) {
+            logger.debug(message, thrown);
+        }
+    }
+
+    /**
+     * @param message message built only when debug is enabled
+     */
+    public void debug(Supplier<String> message) {
+        if (logger.isDebugEnabled()) {
+            logger.debug(message.get());
+        }
+    }
+
+    /**
+     * Logs at debug level as long as the limiter of the call site allows it
+     */
+    public void debug(LogLimiter limiter, String format, Object... args) {
+        if (logger.isDebugEnabled()) {
+            long suppressed = limiter.acquire();
+            if (suppressed >= 0) {
+                logger.debug(withSuppressed(format, suppressed), withSuppressed(args, suppressed));
+            }
+        }
+    }
+
+    public void info(String message) {
+        logger.info(message);
+    }
+
+    public void info(String format, Object arg) {
+        logger.info(format, arg);
+    }
+
+    public void info(String format, Object arg1, Object arg2) {
+        logger.info(format, arg1, arg2);
+    }
+
+    public void info(String format, Object... args) {
+        logger.info(format, args);
+    }
+
+    public void warn(String message) {
+        logger.warn(message);
+    }
+
+    public void warn(String format, Object arg) {
+        logger.warn(format, arg);
+    }
+
+    public void warn(String format, Object arg1, Object arg2) {
+        logger.warn(format, arg1, arg2);
+    }
+
+    public void warn(String format, Object... args) {
+        logger.warn(format, args);
+    }
+
+    public void warn(String message, Throwable thrown) {
+        logger.warn(message, thrown);
+    }
+
+    /**
+     * Logs at warn level as long as the limiter of the call site allows it
+     */
+    public void warn(LogLimiter limiter, String format, Object... args) {
+        long suppressed = limiter.acquire();
+        if (suppressed >= 0) {
+            logger.warn(withSuppressed(format, suppressed), withSuppressed(args, suppressed));
+        }
+    }
+
+    /**
+     * Starts a phase, its summary is logged at info level when it's closed
+     *
+     * @param name name of the phase
+     */
+    public Phase phase(String name) {
+        return new Phase(this, name);
+    }
+
+    private static String withSuppressed(String format, long suppressed) {
+        return suppressed > 0 ? format + " ({} similar messages suppressed)" : format;
+    }
+
+    private static Object[] withSuppressed(Object[] args, long suppressed) {
+        if (suppressed <= 0) {
+            return args;
+        }
+        Object[] extended = Arrays.copyOf(args, args.length + 1);
+        extended[args.length] = suppressed;
+        return extended;
+    }
+}
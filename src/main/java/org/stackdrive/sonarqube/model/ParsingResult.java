@@ -18,21 +18,32 @@
  */
 package org.stackdrive.sonarqube.model;
 
+import org.stackdrive.sonarqube.report.ProblemStore;
+
 import java.util.ArrayList;
 import java.util.List;
 
 public class ParsingResult {
 
-    private List<Problem> problemList = new ArrayList<>();
+    private final ProblemStore problemStore;
 
     private List<TrashyObject> trashyList = new ArrayList<>();
 
-    public List<Problem> getProblemList() {
-        return problemList;
+    /**
+     * Whether the whole report was read, no table truncated
+     */
+    private boolean complete = true;
+
+    public ParsingResult() {
+        this(new ProblemStore());
+    }
+
+    public ParsingResult(ProblemStore problemStore) {
+        this.problemStore = problemStore;
     }
 
-    public void setProblemList(List<Problem> problemList) {
-        this.problemList = problemList;
+    public ProblemStore getProblemStore() {
+        return problemStore;
     }
 
     public List<TrashyObject> getTrashyList() {
@@ -42,4 +53,12 @@ public class ParsingResult {
     public void setTrashyList(List<TrashyObject> trashyList) {
         this.trashyList = trashyList;
     }
+
+    public boolean isComplete() {
+        return complete;
+    }
+
+    public void setComplete(boolean complete) {
+        this.complete = complete;
+    }
 }
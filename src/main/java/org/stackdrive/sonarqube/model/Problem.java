@@ -18,11 +18,20 @@
  */
 package org.stackdrive.sonarqube.model;
 
+import java.util.Comparator;
+
 /**
  * Model of problem
  */
 public class Problem {
 
+    /**
+     * Orders problems from the most severe one: by severety, then bugs before threats
+     */
+    public static final Comparator<Problem> SEVERITY_ORDER = Comparator
+            .comparing(Problem::getSeverety, Comparator.reverseOrder())
+            .thenComparing(Problem::getStatus);
+
     /**
      * Canonical element reference from root of project to semantical significant element
      */
@@ -90,24 +99,44 @@ public class Problem {
     }
 
     /**
-     * Returns element class
+     * Returns element class, top level class for nested class elements
      * @return
      */
     public String clazz () {
         if (this.element.contains("#")) {
-            return this.element.substring(0, this.element.indexOf('#'));
+            String clazz = this.element.substring(0, this.element.indexOf('#'));
+            int nested = indexOfAny(clazz, '$', '.');
+            return nested < 0 ? clazz : clazz.substring(0, nested);
         }
         return "project";
     }
 
     /**
      * Returns line
-     * @return
+     * @return line, 0 when element references a method or class instead of a line
      */
     public int line () {
         if (this.element.contains("#")) {
-            return Integer.parseInt(this.element.substring(this.element.indexOf('#') + 1));
+            String member = this.element.substring(this.element.indexOf('#') + 1).trim();
+            if (member.isEmpty() || member.length() > 9) {
+                return 0;
+            }
+            for (int i = 0; i < member.length(); i++) {
+                if (!Character.isDigit(member.charAt(i))) {
+                    return 0;
+                }
+            }
+            return Integer.parseInt(member);
         }
         return 1;
     }
+
+    private static int indexOfAny(String s, char first, char second) {
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) == first || s.charAt(i) == second) {
+                return i;
+            }
+        }
+        return -1;
+    }
 }
\ No newline at end of file
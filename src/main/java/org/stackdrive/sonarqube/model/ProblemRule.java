@@ -0,0 +1,82 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.stackdrive.sonarqube.model;
+
+/**
+ * Rules of problems by status and severety, free of the sonar API so that the rules are shared by the plugin
+ * and the generic issue converter. Type and severity are names of sonar rule types and severities
+ */
+public enum ProblemRule {
+
+    BUG_ERROR("Bug error level scope", "BUG", "MAJOR"),
+    BUG_WARNING("Bug warning level scope", "BUG", "MINOR"),
+    BUG_INFO("Bug info level scope", "BUG", "INFO"),
+    THREAT_ERROR("Threat error level scope", "VULNERABILITY", "MAJOR"),
+    THREAT_WARNING("Threat warning level scope", "VULNERABILITY", "MINOR"),
+    THREAT_INFO("Threat info level scope", "VULNERABILITY", "INFO");
+
+    private final String key;
+
+    private final String type;
+
+    private final String severity;
+
+    ProblemRule(String key, String type, String severity) {
+        this.key = key;
+        this.type = type;
+        this.severity = severity;
+    }
+
+    /**
+     * Returns rule for problem
+     *
+     * @param problem
+     * @return
+     */
+    public static ProblemRule of(Problem problem) {
+        if (problem.getStatus() == Status.BUG && problem.getSeverety() == Severety.ERROR) {
+            return BUG_ERROR;
+        }
+        if (problem.getStatus() == Status.BUG && problem.getSeverety() == Severety.WARNING) {
+            return BUG_WARNING;
+        }
+        if (problem.getStatus() == Status.BUG && problem.getSeverety() == Severety.INFO) {
+            return BUG_INFO;
+        }
+        if (problem.getStatus() == Status.THREAT && problem.getSeverety() == Severety.ERROR) {
+            return THREAT_ERROR;
+        }
+        if (problem.getStatus() == Status.THREAT && problem.getSeverety() == Severety.WARNING) {
+            return THREAT_WARNING;
+        }
+        return THREAT_INFO;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public String getSeverity() {
+        return severity;
+    }
+}
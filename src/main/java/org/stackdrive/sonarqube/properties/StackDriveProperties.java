@@ -18,22 +18,42 @@
  */
 package org.stackdrive.sonarqube.properties;
 
-import org.stackdrive.sonarqube.audit.StackDriveLogService;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Properties;
 
-public class StackDriveProperties {
+/**
+ * Snapshot of <b>stack-drive.properties</b> bundled with the plugin, read once per scanner run
+ */
+public final class StackDriveProperties {
 
     private static final Logger LOGGER = Loggers.get(StackDriveProperties.class);
 
+    private static final String RESOURCE = "/stack-drive.properties";
+
     private static final String STACKDRIVE_LOG_HOST = "stackdrive.loghost";
 
     private static final String STACKDRIVE_BUILD_VERSION = "stackdrive.build.version";
 
+    /**
+     * Properties of the resource, {@code null} when it can not be read
+     */
+    private final Map<String, String> properties;
+
+    private StackDriveProperties(Map<String, String> properties) {
+        this.properties = properties;
+    }
+
+    public static StackDriveProperties get() {
+        return Holder.INSTANCE;
+    }
+
     public String getBuildVersion() {
         return getProperty(STACKDRIVE_BUILD_VERSION);
     }
@@ -43,17 +63,28 @@ public class StackDriveProperties {
     }
 
     private String getProperty(String key) {
-        try {
-            try (InputStream inputStream = StackDriveLogService.class.getResourceAsStream("/stack-drive.properties")) {
-                Properties properties = new Properties();
-                if (inputStream != null) {
-                    properties.load(inputStream);
-                    return properties.getProperty(key);
+        return properties == null ? key : properties.get(key);
+    }
+
+    private static StackDriveProperties load() {
+        try (InputStream inputStream = StackDriveProperties.class.getResourceAsStream(RESOURCE)) {
+            if (inputStream != null) {
+                Properties loaded = new Properties();
+                loaded.load(inputStream);
+                Map<String, String> properties = new HashMap<>();
+                for (String key : loaded.stringPropertyNames()) {
+                    properties.put(key, loaded.getProperty(key));
                 }
+                return new StackDriveProperties(Collections.unmodifiableMap(properties));
             }
         } catch (IOException e) {
             LOGGER.error("getProperty", e);
         }
-        return key;
+        return new StackDriveProperties(null);
+    }
+
+    private static final class Holder {
+
+        private static final StackDriveProperties INSTANCE = load();
     }
 }
@@ -0,0 +1,408 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.stackdrive.sonarqube.properties;
+
+import org.sonar.api.PropertyType;
+import org.sonar.api.config.Configuration;
+import org.sonar.api.config.PropertyDefinition;
+import org.sonar.api.resources.Qualifiers;
+import org.sonar.api.utils.MessageException;
+import org.stackdrive.sonarqube.report.ParseLimits;
+import org.stackdrive.sonarqube.report.Shard;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Validated plugin settings of a project. Every key is declared as a {@link PropertyDefinition},
+ * so that it can be set in the server UI as well as in the analysis parameters
+ */
+public final class StackDriveSettings {
+
+    /**
+     * Explicit path of the report, other StackDrive files are taken from the same directory
+     */
+    public static final String REPORT_PATH = "sonar.stackdrive.reportPath";
+
+    /**
+     * Number of module's ancestors to search <b>.stackdrive</b> directory in, search stops at the git root anyway
+     */
+    public static final String SEARCH_DEPTH = "sonar.stackdrive.searchDepth";
+
+    /**
+     * Memory budget of parsed problems in megabytes. When set, problems exceeding the budget are spilled to the work dir
+     */
+    public static final String MEMORY_BUDGET = "sonar.stackdrive.memoryBudgetMb";
+
+    public static final String MAX_BYTES = "sonar.stackdrive.limits.maxBytes";
+
+    public static final String MAX_ROWS_PER_TABLE = "sonar.stackdrive.limits.maxRowsPerTable";
+
+    public static final String MAX_CELL_LENGTH = "sonar.stackdrive.limits.maxCellLength";
+
+    public static final String MAX_DEPTH = "sonar.stackdrive.limits.maxDepth";
+
+    /**
+     * Maximum number of issues of a module, the most severe problems are kept
+     */
+    public static final String MAX_ISSUES = "sonar.stackdrive.maxIssues";
+
+    /**
+     * Maximum number of issues of a file, the most severe problems are kept
+     */
+    public static final String MAX_ISSUES_PER_FILE = "sonar.stackdrive.maxIssuesPerFile";
+
+    /**
+     * Creates one issue per file and rule instead of one per problem
+     */
+    public static final String CLUSTER_ISSUES = "sonar.stackdrive.clusterIssues";
+
+    /**
+     * Maximum number of secondary locations of a clustered issue
+     */
+    public static final String CLUSTER_MAX_LOCATIONS = "sonar.stackdrive.clusterMaxLocations";
+
+    /**
+     * Number of files whose declarations are kept indexed for issue locations
+     */
+    public static final String LOCATOR_CACHE_SIZE = "sonar.stackdrive.locatorCacheSize";
+
+    /**
+     * Threads analysing class files when coverage is taken from JaCoCo execution data
+     */
+    public static final String JACOCO_THREADS = "sonar.stackdrive.jacoco.threads";
+
+    /**
+     * Platform threads of blocking I/O on Java 8, tasks run in virtual threads on Java 21. Also bounds concurrent blames
+     */
+    public static final String IO_THREADS = "sonar.stackdrive.io.threads";
+
+    /**
+     * Adds the author of the problem line, taken from git blame, to issue messages
+     */
+    public static final String BLAME = "sonar.stackdrive.blame";
+
+    /**
+     * Directory of blame results kept between analyses, in the scanner user home by default
+     */
+    public static final String BLAME_CACHE_DIR = "sonar.stackdrive.blame.cacheDir";
+
+    /**
+     * Revision a pull request is merged into. When set, only problems and coverage of files changed since the merge base
+     * of it and HEAD are reported
+     */
+    public static final String MERGE_BASE = "sonar.stackdrive.pr.mergeBase";
+
+    /**
+     * Wall-clock budget of the sensor in seconds, work left once it's spent is skipped. 0 for no limit
+     */
+    public static final String TIME_BUDGET = "sonar.stackdrive.timeBudget";
+
+    /**
+     * Index of the shard analysed by this agent, from 0 to the shard count - 1
+     */
+    public static final String SHARD_INDEX = "sonar.stackdrive.shard.index";
+
+    /**
+     * Number of agents sharing the analysis, each one reports the modules of its shard only
+     */
+    public static final String SHARD_COUNT = "sonar.stackdrive.shard.count";
+
+    /**
+     * Sends only check list validators changed since the previous analysis, followed by a checksum of all of them
+     */
+    public static final String CHECKLIST_DELTA = "sonar.stackdrive.checklist.delta";
+
+    /**
+     * Audit service host, the one the plugin was built with by default. Global only, the audit client is shared by the modules
+     */
+    public static final String LOG_HOST = "sonar.stackdrive.logHost";
+
+    private static final String CATEGORY = "StackDrive";
+
+    private static final String USER_HOME = "sonar.userHome";
+
+    private static final int DEFAULT_SEARCH_DEPTH = 3;
+
+    private static final int DEFAULT_MAX_DEPTH = 64;
+
+    private static final int DEFAULT_CLUSTER_MAX_LOCATIONS = 100;
+
+    private static final int DEFAULT_LOCATOR_CACHE_SIZE = 16;
+
+    private static final int DEFAULT_IO_THREADS = 4;
+
+    private final String reportPath;
+
+    private final int searchDepth;
+
+    private final long memoryBudget;
+
+    private final ParseLimits parseLimits;
+
+    private final int maxIssues;
+
+    private final int maxIssuesPerFile;
+
+    private final boolean clusterIssues;
+
+    private final int clusterMaxLocations;
+
+    private final int locatorCacheSize;
+
+    private final int jacocoThreads;
+
+    private final int ioThreads;
+
+    private final String mergeBase;
+
+    private final boolean blame;
+
+    private final Path blameCacheDir;
+
+    private final boolean checkListDelta;
+
+    private final Shard shard;
+
+    private final long timeBudget;
+
+    private final String logHost;
+
+    private StackDriveSettings(Configuration config) {
+        this.reportPath = config.get(REPORT_PATH).orElse(null);
+        this.searchDepth = getInt(config, SEARCH_DEPTH, DEFAULT_SEARCH_DEPTH);
+        this.memoryBudget = getLong(config, MEMORY_BUDGET, 0L) * 1024 * 1024;
+        this.parseLimits = new ParseLimits(
+                getLong(config, MAX_BYTES, 0L),
+                getInt(config, MAX_ROWS_PER_TABLE, 0),
+                getInt(config, MAX_CELL_LENGTH, 0),
+                getInt(config, MAX_DEPTH, DEFAULT_MAX_DEPTH));
+        this.maxIssues = getInt(config, MAX_ISSUES, 0);
+        this.maxIssuesPerFile = getInt(config, MAX_ISSUES_PER_FILE, 0);
+        this.clusterIssues = config.getBoolean(CLUSTER_ISSUES).orElse(false);
+        this.clusterMaxLocations = getInt(config, CLUSTER_MAX_LOCATIONS, DEFAULT_CLUSTER_MAX_LOCATIONS);
+        this.locatorCacheSize = getInt(config, LOCATOR_CACHE_SIZE, DEFAULT_LOCATOR_CACHE_SIZE);
+        int threads = getInt(config, JACOCO_THREADS, 0);
+        this.jacocoThreads = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        this.ioThreads = Math.max(getInt(config, IO_THREADS, DEFAULT_IO_THREADS), 1);
+        this.mergeBase = config.get(MERGE_BASE).orElse(null);
+        this.blame = config.getBoolean(BLAME).orElse(false);
+        this.blameCacheDir = blameCacheDir(config);
+        this.checkListDelta = config.getBoolean(CHECKLIST_DELTA).orElse(false);
+        this.shard = shard(config);
+        this.timeBudget = getLong(config, TIME_BUDGET, 0);
+        this.logHost = config.get(LOG_HOST).orElseGet(() -> StackDriveProperties.get().getLogHost());
+    }
+
+    /**
+     * Reads and validates settings
+     *
+     * @throws MessageException when a value is out of range
+     */
+    public static StackDriveSettings from(Configuration config) {
+        return new StackDriveSettings(config);
+    }
+
+    public static List<PropertyDefinition> definitions() {
+        return Arrays.asList(
+                define(REPORT_PATH, "Report path", "Path of maintenance.json relative to the module, other StackDrive files are taken from the same directory. "
+                        + "By default .stackdrive is searched in the module and its ancestors", PropertyType.STRING, null),
+                define(SEARCH_DEPTH, "Report search depth", "Number of module's ancestors to search .stackdrive directory in",
+                        PropertyType.INTEGER, DEFAULT_SEARCH_DEPTH),
+                define(MEMORY_BUDGET, "Memory budget (MB)", "Problems exceeding the budget are spilled to the work dir, 0 keeps all of them in memory",
+                        PropertyType.LONG, 0),
+                define(MAX_BYTES, "Maximum report size", "Report bytes read at most, 0 for no limit", PropertyType.LONG, 0),
+                define(MAX_ROWS_PER_TABLE, "Maximum rows per table", "Rows read at most from a report table, 0 for no limit",
+                        PropertyType.INTEGER, 0),
+                define(MAX_CELL_LENGTH, "Maximum string length", "Length of a report string at most, charts and comments included, 0 for no limit",
+                        PropertyType.INTEGER, 0),
+                define(MAX_DEPTH, "Maximum nesting", "Nesting of report objects and arrays at most, 0 for no limit",
+                        PropertyType.INTEGER, DEFAULT_MAX_DEPTH),
+                define(MAX_ISSUES, "Maximum issues", "Issues of a module at most, the most severe problems are kept, 0 for no limit",
+                        PropertyType.INTEGER, 0),
+                define(MAX_ISSUES_PER_FILE, "Maximum issues per file", "Issues of a file at most, the most severe problems are kept, 0 for no limit",
+                        PropertyType.INTEGER, 0),
+                define(CLUSTER_ISSUES, "Cluster issues", "One issue per file and rule, other occurrences become secondary locations",
+                        PropertyType.BOOLEAN, false),
+                define(CLUSTER_MAX_LOCATIONS, "Maximum secondary locations", "Secondary locations of a clustered issue at most",
+                        PropertyType.INTEGER, DEFAULT_CLUSTER_MAX_LOCATIONS),
+                define(LOCATOR_CACHE_SIZE, "Source index cache size", "Number of files whose declarations are kept indexed for issue locations",
+                        PropertyType.INTEGER, DEFAULT_LOCATOR_CACHE_SIZE),
+                define(JACOCO_THREADS, "JaCoCo threads", "Threads analysing class files for execution data, 0 for the number of processors",
+                        PropertyType.INTEGER, 0),
+                define(IO_THREADS, "I/O threads", "Threads of report reads and git lookups on Java 8, "
+                        + "on Java 21 every task runs in its own virtual thread. Files blamed at once at most on every Java",
+                        PropertyType.INTEGER, DEFAULT_IO_THREADS),
+                define(MERGE_BASE, "Pull request merge base", "Revision the pull request is merged into, like origin/master. "
+                        + "When set, only problems and coverage of files changed since the merge base of it and HEAD are reported", PropertyType.STRING, null),
+                define(BLAME, "Blame", "Adds the author of the problem line, taken from git blame, to issue messages. "
+                        + "Only files having problems are blamed, results are kept by repository, path and blob id between analyses",
+                        PropertyType.BOOLEAN, false),
+                define(BLAME_CACHE_DIR, "Blame cache directory", "Directory of blame results kept between analyses, "
+                        + "stackdrive/blame of the scanner user home by default. The least recently used results are removed "
+                        + "once there are more than 50000", PropertyType.STRING, null),
+                define(CHECKLIST_DELTA, "Check list delta", "Sends only validators added, removed or changed since the previous analysis "
+                        + "and a checksum of all of them. Previous counts are kept in the .stackdrive directory", PropertyType.BOOLEAN, false),
+                define(TIME_BUDGET, "Time budget (s)", "Wall-clock time of the analysis at most. Every phase stops once it's spent, "
+                        + "issues are created from the most severe ones and skipped work is logged. 0 for no limit", PropertyType.LONG, 0),
+                define(SHARD_INDEX, "Shard index", "Index of the shard analysed by this agent, from 0 to the shard count - 1",
+                        PropertyType.INTEGER, 0),
+                define(SHARD_COUNT, "Shard count", "Number of agents sharing the analysis. Modules are split between them by a hash "
+                        + "of the module key, an agent reports problems, check list rows and events of its modules only. "
+                        + "SonarQube doesn't merge analyses, so each shard is analysed as its own project or branch", PropertyType.INTEGER, 1),
+                builder(LOG_HOST, "Audit host", "Host audit events are sent to, the one the plugin was built with by default. "
+                        + "Set globally or on the scanner command line, the audit client is shared by all projects of the analysis",
+                        PropertyType.STRING, null).build());
+    }
+
+    private static PropertyDefinition define(String key, String name, String description, PropertyType type, Object defaultValue) {
+        return builder(key, name, description, type, defaultValue)
+                .onQualifiers(Qualifiers.PROJECT)
+                .build();
+    }
+
+    /**
+     * Returns builder of a global property, read from the scanner wide configuration
+     */
+    private static PropertyDefinition.Builder builder(String key, String name, String description, PropertyType type, Object defaultValue) {
+        PropertyDefinition.Builder builder = PropertyDefinition.builder(key)
+                .name(name)
+                .description(description)
+                .category(CATEGORY)
+                .type(type);
+        if (defaultValue != null) {
+            builder.defaultValue(String.valueOf(defaultValue));
+        }
+        return builder;
+    }
+
+    private static Path blameCacheDir(Configuration config) {
+        Optional<String> dir = config.get(BLAME_CACHE_DIR);
+        if (dir.isPresent()) {
+            return Paths.get(dir.get());
+        }
+        String userHome = config.get(USER_HOME).orElseGet(() -> Paths.get(System.getProperty("user.home"), ".sonar").toString());
+        return Paths.get(userHome, "stackdrive", "blame");
+    }
+
+    private static Shard shard(Configuration config) {
+        int count = Math.max(getInt(config, SHARD_COUNT, 1), 1);
+        int index = getInt(config, SHARD_INDEX, 0);
+        if (index >= count) {
+            throw MessageException.of("StackDrive - " + SHARD_INDEX + " must be less than " + SHARD_COUNT + " " + count + ", got " + index);
+        }
+        return new Shard(index, count);
+    }
+
+    private static int getInt(Configuration config, String key, int defaultValue) {
+        return (int) checkNotNegative(key, config.getInt(key).orElse(defaultValue));
+    }
+
+    private static long getLong(Configuration config, String key, long defaultValue) {
+        return checkNotNegative(key, config.getLong(key).orElse(defaultValue));
+    }
+
+    private static long checkNotNegative(String key, long value) {
+        if (value < 0) {
+            throw MessageException.of("StackDrive - " + key + " must not be negative, got " + value);
+        }
+        return value;
+    }
+
+    public Optional<String> getReportPath() {
+        return Optional.ofNullable(reportPath);
+    }
+
+    public int getSearchDepth() {
+        return searchDepth;
+    }
+
+    /**
+     * @return memory budget in bytes, 0 when problems are kept in memory
+     */
+    public long getMemoryBudget() {
+        return memoryBudget;
+    }
+
+    public ParseLimits getParseLimits() {
+        return parseLimits;
+    }
+
+    public int getMaxIssues() {
+        return maxIssues;
+    }
+
+    public int getMaxIssuesPerFile() {
+        return maxIssuesPerFile;
+    }
+
+    public boolean isClusterIssues() {
+        return clusterIssues;
+    }
+
+    public int getClusterMaxLocations() {
+        return clusterMaxLocations;
+    }
+
+    public int getLocatorCacheSize() {
+        return locatorCacheSize;
+    }
+
+    public int getJacocoThreads() {
+        return jacocoThreads;
+    }
+
+    public int getIoThreads() {
+        return ioThreads;
+    }
+
+    public Optional<String> getMergeBase() {
+        return Optional.ofNullable(mergeBase);
+    }
+
+    public boolean isBlame() {
+        return blame;
+    }
+
+    public Path getBlameCacheDir() {
+        return blameCacheDir;
+    }
+
+    public boolean isCheckListDelta() {
+        return checkListDelta;
+    }
+
+    public Shard getShard() {
+        return shard;
+    }
+
+    /**
+     * @return time budget in seconds, 0 for no limit
+     */
+    public long getTimeBudget() {
+        return timeBudget;
+    }
+
+    public String getLogHost() {
+        return logHost;
+    }
+}
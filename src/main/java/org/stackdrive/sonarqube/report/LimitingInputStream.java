@@ -0,0 +1,143 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.stackdrive.sonarqube.report;
+
+import org.stackdrive.sonarqube.concurrent.TimeBudget;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Enforces size, string length and nesting depth limits on the raw report bytes as they are read.
+ * JSON structural characters are ASCII and never appear inside multi-byte UTF-8 sequences, so bytes
+ * can be tracked without decoding. The time budget is checked on every read
+ */
+public class LimitingInputStream extends FilterInputStream {
+
+    private final ParseLimits limits;
+
+    private final TimeBudget budget;
+
+    private long position;
+
+    private int depth;
+
+    private boolean inString;
+
+    private boolean escaped;
+
+    private long stringLength;
+
+    public LimitingInputStream(InputStream in, ParseLimits limits) {
+        this(in, limits, TimeBudget.unlimited());
+    }
+
+    public LimitingInputStream(InputStream in, ParseLimits limits, TimeBudget budget) {
+        super(in);
+        this.limits = limits;
+        this.budget = budget;
+    }
+
+    /**
+     * Returns number of bytes read so far
+     */
+    public long getPosition() {
+        return position;
+    }
+
+    @Override
+    public int read() throws IOException {
+        checkBudget();
+        int b = super.read();
+        if (b != -1) {
+            track((byte) b);
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        checkBudget();
+        int count = super.read(buffer, offset, length);
+        for (int i = offset; i < offset + count; i++) {
+            track(buffer[i]);
+        }
+        return count;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        byte[] buffer = new byte[(int) Math.min(n, 8192)];
+        int count = read(buffer, 0, buffer.length);
+        return Math.max(count, 0);
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    private void checkBudget() throws ParseLimitExceededException {
+        if (budget.isExpired()) {
+            throw new ParseLimitExceededException("time budget of " + budget.getMillis() + " ms is spent at byte " + position);
+        }
+    }
+
+    private void track(byte b) throws ParseLimitExceededException {
+        position++;
+        if (limits.getMaxBytes() > 0 && position > limits.getMaxBytes()) {
+            throw new ParseLimitExceededException("report is larger than " + limits.getMaxBytes() + " bytes");
+        }
+        if (inString) {
+            if (escaped) {
+                escaped = false;
+            } else if (b == '\\') {
+                escaped = true;
+            } else if (b == '"') {
+                inString = false;
+                return;
+            }
+            stringLength++;
+            if (limits.getMaxCellLength() > 0 && stringLength > limits.getMaxCellLength()) {
+                throw new ParseLimitExceededException("string longer than " + limits.getMaxCellLength() + " bytes at byte " + position);
+            }
+            return;
+        }
+        switch (b) {
+            case '"':
+                inString = true;
+                stringLength = 0;
+                break;
+            case '{':
+            case '[':
+                depth++;
+                if (limits.getMaxDepth() > 0 && depth > limits.getMaxDepth()) {
+                    throw new ParseLimitExceededException("nesting deeper than " + limits.getMaxDepth() + " at byte " + position);
+                }
+                break;
+            case '}':
+            case ']':
+                depth--;
+                break;
+            default:
+                break;
+        }
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.stackdrive.sonarqube.report;
+
+/**
+ * Limits of report parsing, a limit which is not positive is disabled
+ */
+public class ParseLimits {
+
+    /**
+     * No limit at all
+     */
+    public static final ParseLimits NONE = new ParseLimits(0, 0, 0, 0);
+
+    private final long maxBytes;
+
+    private final int maxRowsPerTable;
+
+    private final int maxCellLength;
+
+    private final int maxDepth;
+
+    /**
+     * @param maxBytes        maximum report size in bytes
+     * @param maxRowsPerTable maximum number of rows read from a table, remaining rows are skipped
+     * @param maxCellLength   maximum length of a string in bytes, cells included
+     * @param maxDepth        maximum nesting depth of objects and arrays
+     */
+    public ParseLimits(long maxBytes, int maxRowsPerTable, int maxCellLength, int maxDepth) {
+        this.maxBytes = maxBytes;
+        this.maxRowsPerTable = maxRowsPerTable;
+        this.maxCellLength = maxCellLength;
+        this.maxDepth = maxDepth;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public int getMaxRowsPerTable() {
+        return maxRowsPerTable;
+    }
+
+    public int getMaxCellLength() {
+        return maxCellLength;
+    }
+
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    @Override
+    public String toString() {
+        return "ParseLimits{" +
+                "maxBytes=" + maxBytes +
+                ", maxRowsPerTable=" + maxRowsPerTable +
+                ", maxCellLength=" + maxCellLength +
+                ", maxDepth=" + maxDepth +
+                '}';
+    }
+}
@@ -0,0 +1,309 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.stackdrive.sonarqube.report;
+
+import org.stackdrive.sonarqube.model.Problem;
+import org.stackdrive.sonarqube.model.Severety;
+import org.stackdrive.sonarqube.model.Status;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+/**
+ * Problems of the report grouped by class.
+ * <p>
+ * With a memory budget, problems are spilled to class sorted run files whenever the estimated size of the buffered
+ * ones reaches the budget, and groups are rebuilt class by class by k-way merging the runs,
+ * so heap use stays flat whatever the report size. Without budget everything stays in memory.
+ */
+public class ProblemStore implements Closeable {
+
+    /**
+     * Rough per problem overhead: object headers, references, map entry and list slot
+     */
+    private static final long PROBLEM_OVERHEAD = 128;
+
+    /**
+     * Maximum number of runs merged at once
+     */
+    private static final int MAX_MERGED_RUNS = 64;
+
+    private final long memoryBudget;
+
+    private final Path spillDir;
+
+    private final List<Path> runs = new ArrayList<>();
+
+    private Map<String, List<Problem>> buffer = new HashMap<>();
+
+    /**
+     * Classes of all added problems, spilled ones included
+     */
+    private final Set<String> classes = new HashSet<>();
+
+    private long bufferSize;
+
+    private long size;
+
+    /**
+     * Creates in memory store
+     */
+    public ProblemStore() {
+        this(0, null);
+    }
+
+    /**
+     * @param memoryBudget estimated size of buffered problems triggering a spill, no spill when not positive
+     * @param spillDir     directory of run files
+     */
+    public ProblemStore(long memoryBudget, Path spillDir) {
+        this.memoryBudget = memoryBudget;
+        this.spillDir = spillDir;
+    }
+
+    public void add(Problem problem) {
+        String clazz = problem.clazz();
+        List<Problem> problems = buffer.get(clazz);
+        if (problems == null) {
+            problems = new ArrayList<>();
+            buffer.put(clazz, problems);
+            classes.add(clazz);
+            bufferSize += PROBLEM_OVERHEAD + 2L * clazz.length();
+        }
+        problems.add(problem);
+        bufferSize += PROBLEM_OVERHEAD + 2L * (length(problem.getElement()) + length(problem.getMessage()));
+        size++;
+        if (memoryBudget > 0 && bufferSize >= memoryBudget) {
+            spill();
+        }
+    }
+
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Returns classes having problems, without reading spilled runs
+     */
+    public Set<String> classes() {
+        return Collections.unmodifiableSet(classes);
+    }
+
+    /**
+     * Returns true when problems didn't fit the memory budget
+     */
+    public boolean isSpilled() {
+        return !runs.isEmpty();
+    }
+
+    /**
+     * Hands problems to the consumer class by class, in class name order
+     *
+     * @param consumer consumer of class name and its problems
+     */
+    public void forEachClass(BiConsumer<String, List<Problem>> consumer) throws IOException {
+        if (runs.isEmpty()) {
+            List<String> classes = new ArrayList<>(buffer.keySet());
+            Collections.sort(classes);
+            for (String clazz : classes) {
+                consumer.accept(clazz, buffer.get(clazz));
+            }
+            return;
+        }
+        if (!buffer.isEmpty()) {
+            spill();
+        }
+        while (runs.size() > MAX_MERGED_RUNS) {
+            compact();
+        }
+        merge(runs, consumer);
+    }
+
+    @Override
+    public void close() throws IOException {
+        buffer = new HashMap<>();
+        for (Path run : runs) {
+            Files.deleteIfExists(run);
+        }
+        runs.clear();
+    }
+
+    private void spill() {
+        List<String> classes = new ArrayList<>(buffer.keySet());
+        Collections.sort(classes);
+        try {
+            Path run = Files.createTempFile(spillDir, "stackdrive-problems-", ".run");
+            runs.add(run);
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(run)))) {
+                for (String clazz : classes) {
+                    write(out, clazz, buffer.get(clazz));
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to spill problems to " + spillDir, e);
+        }
+        buffer = new HashMap<>();
+        bufferSize = 0;
+    }
+
+    /**
+     * Merges the oldest runs into one, so that the final merge doesn't keep too many files open
+     */
+    private void compact() throws IOException {
+        List<Path> merged = new ArrayList<>(runs.subList(0, MAX_MERGED_RUNS));
+        Path run = Files.createTempFile(spillDir, "stackdrive-problems-", ".run");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(run)))) {
+            merge(merged, (clazz, problems) -> {
+                try {
+                    write(out, clazz, problems);
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Failed to merge problems in " + spillDir, e);
+                }
+            });
+        }
+        runs.removeAll(merged);
+        runs.add(run);
+        for (Path path : merged) {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    private static void write(DataOutputStream out, String clazz, List<Problem> problems) throws IOException {
+        for (Problem problem : problems) {
+            writeString(out, clazz);
+            writeString(out, problem.getElement());
+            out.writeByte(problem.getStatus().ordinal());
+            out.writeByte(problem.getSeverety().ordinal());
+            writeString(out, problem.getMessage());
+        }
+    }
+
+    private static void merge(List<Path> runs, BiConsumer<String, List<Problem>> consumer) throws IOException {
+        PriorityQueue<RunCursor> cursors = new PriorityQueue<>(runs.size(), Comparator.comparing((RunCursor cursor) -> cursor.clazz));
+        try {
+            for (Path run : runs) {
+                RunCursor cursor = new RunCursor(run);
+                if (cursor.next()) {
+                    cursors.add(cursor);
+                } else {
+                    cursor.close();
+                }
+            }
+            while (!cursors.isEmpty()) {
+                String clazz = cursors.peek().clazz;
+                List<Problem> problems = new ArrayList<>();
+                while (!cursors.isEmpty() && cursors.peek().clazz.equals(clazz)) {
+                    RunCursor cursor = cursors.poll();
+                    boolean hasNext;
+                    do {
+                        problems.add(cursor.problem);
+                        hasNext = cursor.next();
+                    } while (hasNext && cursor.clazz.equals(clazz));
+                    if (hasNext) {
+                        cursors.add(cursor);
+                    } else {
+                        cursor.close();
+                    }
+                }
+                consumer.accept(clazz, problems);
+            }
+        } finally {
+            for (RunCursor cursor : cursors) {
+                cursor.close();
+            }
+        }
+    }
+
+    private static int length(String value) {
+        return value == null ? 0 : value.length();
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reads a run file record by record
+     */
+    private static final class RunCursor implements Closeable {
+
+        private final DataInputStream in;
+
+        private String clazz;
+
+        private Problem problem;
+
+        RunCursor(Path run) throws IOException {
+            this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(run)));
+        }
+
+        boolean next() throws IOException {
+            try {
+                clazz = readString(in);
+            } catch (EOFException e) {
+                return false;
+            }
+            String element = readString(in);
+            Status status = Status.values()[in.readByte()];
+            Severety severety = Severety.values()[in.readByte()];
+            problem = new Problem(element, status, severety, readString(in));
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,252 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.stackdrive.sonarqube.report;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import org.stackdrive.report.model.views.table.TableRow;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Reads the report as a stream and hands table rows to the {@link TabRouter} handlers as soon as they are read,
+ * without binding the report. Rows read before the tab title or the element type tell whether they are needed
+ * are spilled to a temporary file, so heap use doesn't depend on the report size
+ */
+public class ReportStreamReader {
+
+    private static final String SECTION_LIST = "sectionList";
+
+    private static final String TABBED_LIST = "tabbedList";
+
+    private static final String TAB_PANE_LIST = "tabPaneList";
+
+    private static final String TITLE = "title";
+
+    private static final String ELEMENT = "element";
+
+    private static final String TYPE = "type";
+
+    private static final String TABLE = "table";
+
+    private static final String DATA_TABLE = "DataTable";
+
+    private final TypeAdapter<TableRow> rowAdapter;
+
+    private final ParseLimits limits;
+
+    private final Path spillDir;
+
+    /**
+     * @param gson   report gson, providing the table row adapter
+     * @param limits limits of rows per table, other limits are enforced by {@link LimitingInputStream}
+     */
+    public ReportStreamReader(Gson gson, ParseLimits limits) {
+        this(gson, limits, null);
+    }
+
+    /**
+     * @param gson     report gson, providing the table row adapter
+     * @param limits   limits of rows per table, other limits are enforced by {@link LimitingInputStream}
+     * @param spillDir directory of rows kept until their table is known, the default temporary directory when {@code null}
+     */
+    public ReportStreamReader(Gson gson, ParseLimits limits, Path spillDir) {
+        this.rowAdapter = gson.getAdapter(TableRow.class);
+        this.limits = limits;
+        this.spillDir = spillDir;
+    }
+
+    /**
+     * Routes rows of the section tables, only the first tab of each title is routed
+     *
+     * @param reader      report reader
+     * @param router      table handlers
+     * @param sectionName name of the section to route
+     * @return titles of the tables truncated to the rows limit
+     */
+    public Set<String> read(Reader reader, TabRouter router, String sectionName) throws IOException {
+        JsonReader in = new JsonReader(reader);
+        Set<String> routed = new HashSet<>();
+        Set<String> truncated = new LinkedHashSet<>();
+        in.beginObject();
+        while (in.hasNext()) {
+            if (SECTION_LIST.equals(in.nextName()) && in.peek() == JsonToken.BEGIN_OBJECT) {
+                in.beginObject();
+                while (in.hasNext()) {
+                    if (sectionName.equals(in.nextName()) && in.peek() == JsonToken.BEGIN_OBJECT) {
+                        readSection(in, router, routed, truncated);
+                    } else {
+                        in.skipValue();
+                    }
+                }
+                in.endObject();
+            } else {
+                in.skipValue();
+            }
+        }
+        in.endObject();
+        return truncated;
+    }
+
+    private void readSection(JsonReader in, TabRouter router, Set<String> routed, Set<String> truncated) throws IOException {
+        in.beginObject();
+        while (in.hasNext()) {
+            if (TABBED_LIST.equals(in.nextName()) && in.peek() == JsonToken.BEGIN_ARRAY) {
+                in.beginArray();
+                while (in.hasNext()) {
+                    readTabbed(in, router, routed, truncated);
+                }
+                in.endArray();
+            } else {
+                in.skipValue();
+            }
+        }
+        in.endObject();
+    }
+
+    private void readTabbed(JsonReader in, TabRouter router, Set<String> routed, Set<String> truncated) throws IOException {
+        if (in.peek() != JsonToken.BEGIN_OBJECT) {
+            in.skipValue();
+            return;
+        }
+        in.beginObject();
+        while (in.hasNext()) {
+            if (TAB_PANE_LIST.equals(in.nextName()) && in.peek() == JsonToken.BEGIN_ARRAY) {
+                in.beginArray();
+                while (in.hasNext()) {
+                    readTabPane(in, router, routed, truncated);
+                }
+                in.endArray();
+            } else {
+                in.skipValue();
+            }
+        }
+        in.endObject();
+    }
+
+    private void readTabPane(JsonReader in, TabRouter router, Set<String> routed, Set<String> truncated) throws IOException {
+        if (in.peek() != JsonToken.BEGIN_OBJECT) {
+            in.skipValue();
+            return;
+        }
+        String title = null;
+        RowSpill spill = null;
+        boolean spillTruncated = false;
+        try {
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case TITLE:
+                        title = in.peek() == JsonToken.STRING ? in.nextString() : null;
+                        if (title == null) {
+                            in.skipValue();
+                        }
+                        break;
+                    case ELEMENT:
+                        if (title == null) {
+                            // title comes later, can't tell yet whether the rows are needed
+                            if (spill != null) {
+                                spill.close();
+                            }
+                            spill = new RowSpill(rowAdapter, spillDir);
+                            spillTruncated = readElement(in, spill::add);
+                        } else if (router.handler(title) != null && routed.add(title)) {
+                            if (readElement(in, router.handler(title)::handle)) {
+                                truncated.add(title);
+                            }
+                        } else {
+                            in.skipValue();
+                        }
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+
+            if (spill != null && title != null && router.handler(title) != null && routed.add(title)) {
+                spill.replay(router.handler(title)::handle);
+                if (spillTruncated) {
+                    truncated.add(title);
+                }
+            }
+        } finally {
+            if (spill != null) {
+                spill.close();
+            }
+        }
+    }
+
+    /**
+     * Streams rows of a data table within the rows limit. Rows met before the type field are spilled until the type is known
+     *
+     * @return true when the table was truncated to the rows limit
+     */
+    private boolean readElement(JsonReader in, RowSpill.Sink sink) throws IOException {
+        if (in.peek() != JsonToken.BEGIN_OBJECT) {
+            in.skipValue();
+            return false;
+        }
+        boolean truncated = false;
+        String type = null;
+        try (RowSpill pending = new RowSpill(rowAdapter, spillDir)) {
+            boolean spilled = false;
+            in.beginObject();
+            while (in.hasNext()) {
+                String name = in.nextName();
+                if (TYPE.equals(name) && in.peek() == JsonToken.STRING) {
+                    type = in.nextString();
+                } else if (TABLE.equals(name) && in.peek() == JsonToken.BEGIN_ARRAY && (type == null || DATA_TABLE.equals(type))) {
+                    RowSpill.Sink rows = type == null ? pending::add : sink;
+                    spilled |= type == null;
+                    in.beginArray();
+                    int count = 0;
+                    while (in.hasNext()) {
+                        if (limits.getMaxRowsPerTable() > 0 && count >= limits.getMaxRowsPerTable()) {
+                            truncated = true;
+                            in.skipValue();
+                            continue;
+                        }
+                        count++;
+                        TableRow row = rowAdapter.read(in);
+                        if (row != null) {
+                            rows.accept(row);
+                        }
+                    }
+                    in.endArray();
+                } else {
+                    in.skipValue();
+                }
+            }
+            in.endObject();
+
+            if (spilled && DATA_TABLE.equals(type)) {
+                pending.replay(sink);
+            }
+        }
+        return truncated;
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.stackdrive.sonarqube.report;
+
+import org.stackdrive.report.model.views.table.TableRow;
+import org.stackdrive.sonarqube.model.Problem;
+import org.stackdrive.sonarqube.model.Severety;
+import org.stackdrive.sonarqube.model.Status;
+import org.stackdrive.sonarqube.model.TrashyObject;
+
+import java.util.Objects;
+
+/**
+ * Tables of the risks section and mapping of their rows
+ */
+public final class RiskTables {
+
+    public static final String RISKS_SECTION = "Risks";
+
+    public static final String BUG_TAB = "list_bug";
+
+    public static final String THREAT_TAB = "list_threat";
+
+    public static final String OK_TAB = "list_ok";
+
+    private RiskTables() {
+    }
+
+    /**
+     * Parses problem from table row
+     *
+     * @param status
+     * @param dataNode
+     * @return
+     */
+    public static Problem problem(Status status, TableRow dataNode) {
+        String element = dataNode.getCell2();
+        String code = dataNode.getCell1();
+        return new Problem(element, status, severety(dataNode), code);
+    }
+
+    /**
+     * Parses trashy object from table row
+     *
+     * @param dataNode
+     * @return
+     */
+    public static TrashyObject trashyObject(TableRow dataNode) {
+        TrashyObject trashyObject = new TrashyObject();
+        final String cell1 = dataNode.getCell1();
+        if (Objects.nonNull(cell1)) {
+            if (cell1.contains("_off")) {
+                trashyObject.setEnabled(false);
+                trashyObject.setExceptionCount(0);
+                trashyObject.setValidationCount(0);
+            } else {
+                trashyObject.setEnabled(true);
+            }
+        }
+
+        final String cell2 = dataNode.getCell2();
+        if (Objects.nonNull(cell2)) {
+            final String[] split = cell2.split(":");
+            trashyObject.setValidatorCode(split[0]);
+        }
+
+        final String cell4 = dataNode.getCell4();
+        if (Objects.nonNull(cell4)) {
+            trashyObject.setExceptionCount(Integer.parseInt(cell4));
+        }
+
+        final String cell3 = dataNode.getCell3();
+        if (Objects.nonNull(cell3)) {
+            if (cell3.contains("problem_ok")) {
+                trashyObject.setValidationCount(trashyObject.getExceptionCount());
+            } else {
+                trashyObject.setValidationCount(Integer.parseInt(cell3));
+            }
+        }
+        return trashyObject;
+    }
+
+    /**
+     * Returns severety
+     *
+     * @param node
+     * @return
+     */
+    private static Severety severety(TableRow node) {
+        String img = node.getImageCode();
+        if ("balloon_info".equals(img)) {
+            return Severety.INFO;
+        }
+        if ("balloon_warning".equals(img)) {
+            return Severety.WARNING;
+        }
+        if ("balloon_error".equals(img)) {
+            return Severety.ERROR;
+        }
+        return Severety.INFO;
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.stackdrive.sonarqube.report;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import org.stackdrive.report.model.views.table.TableRow;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Rows of a table kept in a temporary file until it's known whether they are needed, so that heap use
+ * doesn't depend on the table size. The file is created with the first row and deleted on close
+ */
+final class RowSpill implements Closeable {
+
+    private final TypeAdapter<TableRow> rowAdapter;
+
+    private final Path spillDir;
+
+    private Path file;
+
+    private Writer out;
+
+    private JsonWriter writer;
+
+    /**
+     * @param spillDir directory of the temporary file, the default temporary directory when {@code null}
+     */
+    RowSpill(TypeAdapter<TableRow> rowAdapter, Path spillDir) {
+        this.rowAdapter = rowAdapter;
+        this.spillDir = spillDir;
+    }
+
+    void add(TableRow row) throws IOException {
+        if (writer == null) {
+            file = spillDir == null
+                    ? Files.createTempFile("stackdrive-rows-", ".json")
+                    : Files.createTempFile(spillDir, "stackdrive-rows-", ".json");
+            out = Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+            writer = new JsonWriter(out);
+            writer.beginArray();
+        }
+        rowAdapter.write(writer, row);
+    }
+
+    /**
+     * Hands the kept rows to the sink, in the order they were added
+     */
+    void replay(Sink sink) throws IOException {
+        if (writer == null) {
+            return;
+        }
+        writer.endArray();
+        writer.close();
+        try (JsonReader in = new JsonReader(Files.newBufferedReader(file, StandardCharsets.UTF_8))) {
+            in.beginArray();
+            while (in.hasNext()) {
+                sink.accept(rowAdapter.read(in));
+            }
+            in.endArray();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (writer != null) {
+            try {
+                // the array may be unfinished, closing the json writer would fail
+                out.close();
+            } finally {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    /**
+     * Consumer of rows which may write them to disk
+     */
+    @FunctionalInterface
+    interface Sink {
+
+        void accept(TableRow row) throws IOException;
+    }
+}
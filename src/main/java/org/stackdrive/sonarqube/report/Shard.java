@@ -0,0 +1,86 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.stackdrive.sonarqube.report;
+
+/**
+ * Share of the analysis done by one of several agents. Modules are owned by a stable hash of their key, so that
+ * all problems, check list rows and events of a module are reported by the same agent.
+ * SonarQube doesn't merge analyses, each shard is uploaded as its own project or branch
+ */
+public final class Shard {
+
+    /**
+     * The only shard, owning everything
+     */
+    public static final Shard ALL = new Shard(0, 1);
+
+    private final int index;
+
+    private final int count;
+
+    /**
+     * @param index index of the shard, from 0 to count - 1
+     * @param count number of shards
+     */
+    public Shard(int index, int count) {
+        if (count < 1 || index < 0 || index >= count) {
+            throw new IllegalArgumentException("Shard " + index + " of " + count);
+        }
+        this.index = index;
+        this.count = count;
+    }
+
+    /**
+     * Returns true when the shard reports the module
+     */
+    public boolean owns(String module) {
+        return count == 1 || Math.floorMod(hash(module), count) == index;
+    }
+
+    public boolean isSharded() {
+        return count > 1;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * String hash codes are specified, so the hash is the same on every agent. The final mix spreads
+     * modules differing in their last characters only
+     */
+    private static int hash(String module) {
+        int h = String.valueOf(module).hashCode();
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    @Override
+    public String toString() {
+        return index + "/" + count;
+    }
+}
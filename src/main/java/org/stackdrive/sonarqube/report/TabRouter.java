@@ -0,0 +1,56 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.stackdrive.sonarqube.report;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Registry of table handlers by tab title, {@link ReportStreamReader} routes the rows of a report section to them.
+ * Tabs without handler and missing tabs cost nothing
+ */
+public class TabRouter {
+
+    private final Map<String, RowHandler> handlers = new LinkedHashMap<>();
+
+    /**
+     * Registers handler of a table
+     *
+     * @param title   title of the tab holding the table
+     * @param handler handler of the table rows
+     * @return this router
+     */
+    public TabRouter register(String title, RowHandler handler) {
+        Objects.requireNonNull(title);
+        Objects.requireNonNull(handler);
+        if (handlers.containsKey(title)) {
+            throw new IllegalArgumentException("Handler of tab '" + title + "' is already registered");
+        }
+        handlers.put(title, handler);
+        return this;
+    }
+
+    /**
+     * Returns handler of the tab, {@code null} when the tab isn't routed
+     */
+    public RowHandler handler(String title) {
+        return handlers.get(title);
+    }
+}
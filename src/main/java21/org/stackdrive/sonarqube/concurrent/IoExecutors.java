@@ -0,0 +1,48 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.stackdrive.sonarqube.concurrent;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Executors of blocking I/O tasks, Java 21 version: every task runs in its own virtual thread,
+ * blocked tasks don't hold a platform thread
+ */
+public final class IoExecutors {
+
+    private IoExecutors() {
+        // utility class
+    }
+
+    /**
+     * @param name       prefix of thread names
+     * @param maxThreads ignored, virtual threads are not pooled
+     */
+    public static ExecutorService newExecutor(String name, int maxThreads) {
+        return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(name + "-", 0).factory());
+    }
+
+    /**
+     * @return whether tasks run in virtual threads
+     */
+    public static boolean isVirtual() {
+        return true;
+    }
+}
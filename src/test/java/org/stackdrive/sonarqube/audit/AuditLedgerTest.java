@@ -0,0 +1,65 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.stackdrive.sonarqube.audit;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AuditLedgerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void skipsRecordedKeysInLaterRuns() throws IOException {
+        Path file = folder.newFolder().toPath().resolve("audit.ledger");
+        IdempotencyKey sent = IdempotencyKey.of("VALIDATION_PRESENTED", "repo", "commit", "module");
+        AuditLedger ledger = new AuditLedger(file);
+
+        assertTrue(ledger.reserve(sent));
+        assertFalse(ledger.reserve(sent));
+        ledger.record(sent);
+
+        assertFalse(new AuditLedger(file).reserve(sent));
+    }
+
+    @Test
+    public void sendsAgainKeysNotRecorded() throws IOException {
+        Path file = folder.newFolder().toPath().resolve("audit.ledger");
+        IdempotencyKey failed = IdempotencyKey.of("VALIDATION_VERIFIED", "repo", "commit", "module");
+        IdempotencyKey interrupted = IdempotencyKey.of("CODE_REVIEW_EVENT", "repo", "commit", "module");
+        AuditLedger ledger = new AuditLedger(file);
+
+        assertTrue(ledger.reserve(failed));
+        ledger.release(failed);
+        assertTrue(ledger.reserve(failed));
+        assertTrue(ledger.reserve(interrupted));
+
+        AuditLedger retry = new AuditLedger(file);
+        assertTrue(retry.reserve(failed));
+        assertTrue(retry.reserve(interrupted));
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.stackdrive.sonarqube.cli;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class GenericIssueConverterTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void reportsLinesBeyondEndOfFileOnTheFile() throws Exception {
+        File project = folder.newFolder("project");
+        Path source = project.toPath().resolve("src/Foo.java");
+        Files.createDirectories(source.getParent());
+        Files.write(source, "class Foo {\n}\n".getBytes(StandardCharsets.UTF_8));
+        Path report = write("maintenance.json", "{\"sectionList\":{\"Risks\":{\"tabbedList\":[{\"tabPaneList\":[{\"title\":\"list_bug\","
+                + "\"element\":{\"type\":\"DataTable\",\"table\":["
+                + row("Foo#2") + "," + row("Foo#3") + "," + row("Foo#4") + "," + row("Missing#1") + "]}}]}]}}}");
+        Path output = folder.getRoot().toPath().resolve("issues.json");
+
+        GenericIssueConverter.main(new String[]{report.toString(), output.toString(), project.getPath()});
+
+        JsonArray issues = parse(output).getAsJsonArray("issues");
+        assertEquals(3, issues.size());
+        assertEquals(2, location(issues, 0).getAsJsonObject("textRange").get("startLine").getAsInt());
+        assertEquals(3, location(issues, 1).getAsJsonObject("textRange").get("startLine").getAsInt());
+        assertFalse(location(issues, 2).has("textRange"));
+        assertEquals("src/Foo.java", location(issues, 2).get("filePath").getAsString());
+    }
+
+    @Test
+    public void skipsTestSourcesAndBuildOutput() throws Exception {
+        File project = folder.newFolder("project");
+        source(project, "src/main/java/build/Foo.java");
+        source(project, "src/test/java/build/Foo.java");
+        source(project, "target/generated-sources/annotations/Foo.java");
+        source(project, "build/generated/sources/Foo.java");
+        Path output = folder.getRoot().toPath().resolve("issues.json");
+
+        GenericIssueConverter.main(new String[]{fooReport().toString(), output.toString(), project.getPath()});
+
+        JsonArray issues = parse(output).getAsJsonArray("issues");
+        assertEquals(1, issues.size());
+        assertEquals("src/main/java/build/Foo.java", location(issues, 0).get("filePath").getAsString());
+    }
+
+    @Test
+    public void indexesGivenSourceDirsOnly() throws Exception {
+        File project = folder.newFolder("project");
+        source(project, "app/src/Foo.java");
+        source(project, "lib/src/Foo.java");
+        Path output = folder.getRoot().toPath().resolve("issues.json");
+
+        GenericIssueConverter.main(new String[]{fooReport().toString(), output.toString(), project.getPath(), "lib/src"});
+
+        JsonArray issues = parse(output).getAsJsonArray("issues");
+        assertEquals(1, issues.size());
+        assertEquals("lib/src/Foo.java", location(issues, 0).get("filePath").getAsString());
+    }
+
+    private static void source(File project, String path) throws IOException {
+        Path source = project.toPath().resolve(path);
+        Files.createDirectories(source.getParent());
+        Files.write(source, "class Foo {\n}\n".getBytes(StandardCharsets.UTF_8));
+    }
+
+    private Path fooReport() throws IOException {
+        return write("maintenance.json", "{\"sectionList\":{\"Risks\":{\"tabbedList\":[{\"tabPaneList\":[{\"title\":\"list_bug\","
+                + "\"element\":{\"type\":\"DataTable\",\"table\":[" + row("Foo#1") + "]}}]}]}}}");
+    }
+
+    private Path write(String name, String content) throws IOException {
+        Path file = folder.getRoot().toPath().resolve(name);
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    private static String row(String element) {
+        return "{\"imageCode\":\"balloon_error\",\"cell1\":\"code\",\"cell2\":\"" + element + "\"}";
+    }
+
+    private static JsonObject parse(Path output) throws IOException {
+        return JsonParser.parseString(new String(Files.readAllBytes(output), StandardCharsets.UTF_8)).getAsJsonObject();
+    }
+
+    private static JsonObject location(JsonArray issues, int index) {
+        return issues.get(index).getAsJsonObject().getAsJsonObject("primaryLocation");
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.stackdrive.sonarqube.concurrent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of {@link IoExecutors} on tasks blocked on I/O, e.g. audit sends or blames.
+ * Latency is simulated by sleeping. Run it with the plugin jar on the classpath, classes of
+ * <b>META-INF/versions/21</b> are only picked from a jar: on Java 8 for the platform thread pool,
+ * on Java 21 for virtual threads
+ * <pre>
+ * java -cp &lt;plugin jar&gt;:target/test-classes org.stackdrive.sonarqube.concurrent.IoExecutorsBenchmark [tasks] [latencyMs] [threads]
+ * </pre>
+ */
+public final class IoExecutorsBenchmark {
+
+    private static final int WARMUP_ROUNDS = 3;
+
+    private static final int ROUNDS = 5;
+
+    private IoExecutorsBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int tasks = args.length > 0 ? Integer.parseInt(args[0]) : 512;
+        long latency = args.length > 1 ? Long.parseLong(args[1]) : 20;
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+
+        System.out.printf("java %s, virtual threads: %s, %d tasks of %d ms, %d threads%n",
+                System.getProperty("java.version"), IoExecutors.isVirtual(), tasks, latency, threads);
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            round(tasks, latency, threads);
+        }
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < ROUNDS; i++) {
+            long nanos = round(tasks, latency, threads);
+            best = Math.min(best, nanos);
+            System.out.printf("round %d: %d ms%n", i + 1, TimeUnit.NANOSECONDS.toMillis(nanos));
+        }
+        System.out.printf("best: %d ms, %.0f tasks/s%n", TimeUnit.NANOSECONDS.toMillis(best), tasks * 1e9 / best);
+    }
+
+    private static long round(int tasks, long latency, int threads) throws Exception {
+        ExecutorService executor = IoExecutors.newExecutor("benchmark", threads);
+        try {
+            long start = System.nanoTime();
+            List<Future<?>> futures = new ArrayList<>(tasks);
+            for (int i = 0; i < tasks; i++) {
+                futures.add(executor.submit(() -> {
+                    Thread.sleep(latency);
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            return System.nanoTime() - start;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
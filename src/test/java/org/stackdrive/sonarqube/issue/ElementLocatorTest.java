@@ -0,0 +1,107 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.stackdrive.sonarqube.issue;
+
+import org.junit.Test;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.fs.TextRange;
+import org.sonar.api.batch.fs.internal.TestInputFileBuilder;
+import org.stackdrive.sonarqube.model.Problem;
+import org.stackdrive.sonarqube.model.Severety;
+import org.stackdrive.sonarqube.model.Status;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.stackdrive.sonarqube.issue.SourceIndexTest.lines;
+
+public class ElementLocatorTest {
+
+    private static final String CONTROLLER = lines(
+            "package org.acme;",
+            "",
+            "class Controller {",
+            "    @GetMapping(path = \"/x\")",
+            "    String get() {",
+            "        return \"x\";",
+            "    }",
+            "",
+            "    static class Handler {",
+            "        void handle() {",
+            "        }",
+            "    }",
+            "}");
+
+    private final ElementLocator locator = new ElementLocator(2);
+
+    @Test
+    public void locatesMethodAfterAnnotationArguments() {
+        assertRange(5, 11, 7, 5, locator.locate(file(CONTROLLER), problem("Controller#get")));
+    }
+
+    @Test
+    public void locatesNestedTypesAndTheirMethods() {
+        InputFile file = file(CONTROLLER);
+
+        assertRange(10, 13, 11, 9, locator.locate(file, problem("Controller$Handler#handle")));
+        assertRange(10, 13, 11, 9, locator.locate(file, problem("Controller.Handler#handle")));
+        assertRange(9, 17, 12, 5, locator.locate(file, problem("Controller$Handler")));
+    }
+
+    @Test
+    public void fallsBackToClassOnUnknownMember() {
+        assertRange(3, 6, 13, 1, locator.locate(file(CONTROLLER), problem("Controller#missing")));
+    }
+
+    @Test
+    public void locatesLines() {
+        InputFile file = file(CONTROLLER);
+
+        assertEquals(6, locator.locate(file, problem("Controller#6")).start().line());
+        assertNull(locator.locate(file, problem("Controller#99")));
+        assertNull(locator.locate(file, problem("Other#get")));
+    }
+
+    @Test
+    public void locatesMethodsOfCrlfFiles() {
+        InputFile file = file("class Crlf {\r\n    void run() {\r\n    }\r\n}\r\n");
+
+        assertRange(2, 9, 3, 5, locator.locate(file, problem("Crlf#run")));
+    }
+
+    private static InputFile file(String contents) {
+        return new TestInputFileBuilder("module", "src/main/java/org/acme/" + contents.hashCode() + ".java")
+                .setCharset(StandardCharsets.UTF_8)
+                .setContents(contents)
+                .initMetadata(contents)
+                .build();
+    }
+
+    private static Problem problem(String element) {
+        return new Problem(element, Status.BUG, Severety.ERROR, "message");
+    }
+
+    private static void assertRange(int startLine, int startOffset, int endLine, int endOffset, TextRange range) {
+        assertEquals(startLine, range.start().line());
+        assertEquals(startOffset, range.start().lineOffset());
+        assertEquals(endLine, range.end().line());
+        assertEquals(endOffset, range.end().lineOffset());
+    }
+}
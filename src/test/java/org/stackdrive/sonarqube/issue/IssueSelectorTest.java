@@ -0,0 +1,91 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.stackdrive.sonarqube.issue;
+
+import org.junit.Test;
+import org.stackdrive.sonarqube.model.Problem;
+import org.stackdrive.sonarqube.model.Severety;
+import org.stackdrive.sonarqube.model.Status;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class IssueSelectorTest {
+
+    @Test
+    public void keepsMostSevereProblemsWithinLimits() {
+        List<String> emitted = new ArrayList<>();
+        IssueSelector<String> selector = new IssueSelector<>(2, 0, (file, problem) -> emitted.add(problem.getMessage()));
+
+        selector.offer("A", Arrays.asList(problem("a1", Severety.INFO), problem("a2", Severety.ERROR)));
+        selector.offer("B", Arrays.asList(problem("b1", Severety.WARNING)));
+        selector.flush();
+
+        assertEquals(Arrays.asList("a2", "b1"), emitted);
+        assertEquals(1, selector.getSuppressed());
+    }
+
+    @Test
+    public void keepsMostSevereProblemsOfFile() {
+        List<String> emitted = new ArrayList<>();
+        IssueSelector<String> selector = new IssueSelector<>(0, 1, (file, problem) -> emitted.add(problem.getMessage()));
+
+        selector.offer("A", Arrays.asList(problem("a1", Severety.INFO), problem("a2", Severety.ERROR)));
+
+        assertEquals(Arrays.asList("a2"), emitted);
+        assertEquals(1, selector.getSuppressed());
+    }
+
+    @Test
+    public void emitsRetainedProblemsGroupedByFile() {
+        List<String> emitted = new ArrayList<>();
+        IssueSelector<String> selector = new IssueSelector<>(10, 0, (file, problem) -> emitted.add(file + ":" + problem.getMessage()));
+
+        selector.offer("A", Arrays.asList(problem("a1", Severety.INFO), problem("a2", Severety.ERROR)));
+        selector.offer("B", Arrays.asList(problem("b1", Severety.ERROR), problem("b2", Severety.WARNING)));
+        selector.offer(null, Arrays.asList(problem("p1", Severety.WARNING)));
+        selector.flush();
+
+        assertEquals(Arrays.asList("A:a2", "A:a1", "B:b1", "B:b2", "null:p1"), emitted);
+    }
+
+    @Test
+    public void clustersSelectedProblemsOncePerFileAndRule() {
+        List<String> clusters = new ArrayList<>();
+        IssueClusterer<String, Status> clusterer = new IssueClusterer<>(Problem::getStatus,
+                (file, rule, problems) -> clusters.add(file + ":" + rule + ":" + problems.size()));
+        IssueSelector<String> selector = new IssueSelector<>(5, 0, clusterer::accept);
+
+        // Severeties interleave the files once the retained problems are sorted
+        selector.offer("A", Arrays.asList(problem("a1", Severety.ERROR), problem("a2", Severety.INFO), problem("a3", Severety.WARNING)));
+        selector.offer("B", Arrays.asList(problem("b1", Severety.WARNING), problem("b2", Severety.ERROR), problem("b3", Severety.INFO)));
+        selector.flush();
+        clusterer.flush();
+
+        assertEquals(Arrays.asList("A:BUG:3", "B:BUG:2"), clusters);
+        assertEquals(1, selector.getSuppressed());
+    }
+
+    private static Problem problem(String message, Severety severety) {
+        return new Problem("org/acme/Some#1", Status.BUG, severety, message);
+    }
+}
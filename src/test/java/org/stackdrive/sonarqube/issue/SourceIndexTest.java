@@ -0,0 +1,192 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.stackdrive.sonarqube.issue;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class SourceIndexTest {
+
+    @Test
+    public void indexesMethodsAfterAnnotationArguments() {
+        SourceIndex.Declaration controller = type(SourceIndex.of(lines(
+                "@RestController",
+                "class Controller {",
+                "    @GetMapping(path = \"/x\", produces = {\"text/plain\"})",
+                "    public String get() {",
+                "        return \"x\";",
+                "    }",
+                "",
+                "    @PostMapping(value = \"/y\")",
+                "    void post(@RequestParam(name = \"id\") String id) {",
+                "    }",
+                "}")), "Controller");
+
+        assertEquals(Arrays.asList("get", "post"), names(controller));
+        assertEquals(4, controller.member("get", false).startLine);
+        assertEquals(6, controller.member("get", false).endLine);
+        assertEquals(9, controller.member("post", false).startLine);
+    }
+
+    @Test
+    public void skipsFieldInitializers() {
+        SourceIndex.Declaration type = type(SourceIndex.of(lines(
+                "class Fields {",
+                "    private final Runnable task = () -> { run(); };",
+                "    private int size = compute(1, 2);",
+                "    int size() {",
+                "        return size;",
+                "    }",
+                "}")), "Fields");
+
+        assertEquals(Arrays.asList("size"), names(type));
+        assertEquals(4, type.member("size", false).startLine);
+    }
+
+    @Test
+    public void indexesRecords() {
+        SourceIndex.Declaration point = type(SourceIndex.of(lines(
+                "record Point(int x, int y) {",
+                "    Point {",
+                "        check(x = 0);",
+                "    }",
+                "",
+                "    int sum() {",
+                "        return x + y;",
+                "    }",
+                "}")), "Point");
+
+        assertEquals(Arrays.asList("sum"), names(point));
+        assertEquals(6, point.member("sum", false).startLine);
+        assertEquals(9, point.endLine);
+    }
+
+    @Test
+    public void indexesEnumsWithBodies() {
+        SourceIndex.Declaration op = type(SourceIndex.of(lines(
+                "enum Op {",
+                "    PLUS(\"+\") {",
+                "        int apply(int a, int b) {",
+                "            return a + b;",
+                "        }",
+                "    },",
+                "    MINUS(\"-\") {",
+                "        int apply(int a, int b) {",
+                "            return a - b;",
+                "        }",
+                "    };",
+                "",
+                "    private final String sign;",
+                "",
+                "    Op(String sign) {",
+                "        this.sign = sign;",
+                "    }",
+                "",
+                "    abstract int apply(int a, int b);",
+                "}")), "Op");
+
+        assertEquals(Arrays.asList("Op", "apply"), names(op));
+        assertEquals(15, op.member("Op", false).startLine);
+        assertEquals(19, op.member("apply", false).startLine);
+        assertEquals(19, op.member("apply", false).endLine);
+    }
+
+    @Test
+    public void indexesNestedTypes() {
+        SourceIndex index = SourceIndex.of(lines(
+                "class Outer {",
+                "    static class Inner {",
+                "        interface Deep {",
+                "            void call();",
+                "        }",
+                "        void run() {",
+                "        }",
+                "    }",
+                "    void run() {",
+                "    }",
+                "}"));
+        SourceIndex.Declaration outer = type(index, "Outer");
+        SourceIndex.Declaration inner = outer.member("Inner", true);
+
+        assertNotNull(inner);
+        assertEquals(6, inner.member("run", false).startLine);
+        assertEquals(4, inner.member("Deep", true).member("call", false).startLine);
+        assertEquals(9, outer.member("run", false).startLine);
+        assertNull(outer.member("call", false));
+    }
+
+    @Test
+    public void skipsLiteralsAndComments() {
+        SourceIndex.Declaration type = type(SourceIndex.of(lines(
+                "class Texts {",
+                "    String block = \"\"\"",
+                "        class Fake { void fake() {} } \\",
+                "        \" } \"",
+                "        \"\"\";",
+                "    char brace = '}';",
+                "    // void commented() {",
+                "    /* } */",
+                "    void real() {",
+                "    }",
+                "}")), "Texts");
+
+        assertEquals(Arrays.asList("real"), names(type));
+        assertEquals(9, type.member("real", false).startLine);
+        assertEquals(11, type.endLine);
+    }
+
+    @Test
+    public void countsLinesOfCrlfSources() {
+        SourceIndex.Declaration type = type(SourceIndex.of("class Crlf {\r\n\r\n    void run() {\r\n    }\r\n}\r\n"), "Crlf");
+
+        SourceIndex.Declaration run = type.member("run", false);
+        assertEquals(3, run.startLine);
+        assertEquals(9, run.startOffset);
+        assertEquals(4, run.endLine);
+        assertEquals(5, run.endOffset);
+    }
+
+    static String lines(String... lines) {
+        return String.join("\n", lines) + "\n";
+    }
+
+    private static SourceIndex.Declaration type(SourceIndex index, String name) {
+        for (SourceIndex.Declaration type : index.types()) {
+            if (type.name.equals(name)) {
+                return type;
+            }
+        }
+        throw new AssertionError("No type " + name);
+    }
+
+    private static List<String> names(SourceIndex.Declaration type) {
+        List<String> names = new ArrayList<>();
+        for (SourceIndex.Declaration member : type.members) {
+            names.add(member.name);
+        }
+        return names;
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.stackdrive.sonarqube.report;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.stackdrive.sonarqube.model.Problem;
+import org.stackdrive.sonarqube.model.Severety;
+import org.stackdrive.sonarqube.model.Status;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ProblemStoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void handsBufferedProblemsInClassOrder() throws IOException {
+        ProblemStore store = new ProblemStore();
+        store.add(problem("b/Second#1", "b1"));
+        store.add(problem("a/First#1", "a1"));
+        store.add(problem("b/Second#2", "b2"));
+
+        Map<String, List<String>> problems = read(store);
+
+        assertFalse(store.isSpilled());
+        assertEquals(3, store.size());
+        assertEquals(Arrays.asList("a/First", "b/Second"), new ArrayList<>(problems.keySet()));
+        assertEquals(Arrays.asList("b1", "b2"), problems.get("b/Second"));
+    }
+
+    @Test
+    public void mergesSpilledRunsInClassOrder() throws IOException {
+        File spillDir = folder.newFolder();
+        try (ProblemStore store = new ProblemStore(1, spillDir.toPath())) {
+            store.add(problem("c/Third#1", "c1"));
+            store.add(problem("a/First#1", "a1"));
+            store.add(problem("c/Third#2", "c2"));
+            store.add(problem("b/Second#1", "b1"));
+            store.add(problem("a/First$Nested#2", "a2"));
+
+            Map<String, List<String>> problems = read(store);
+
+            assertTrue(store.isSpilled());
+            assertEquals(Arrays.asList("a/First", "b/Second", "c/Third"), new ArrayList<>(problems.keySet()));
+            assertEquals(Arrays.asList("a1", "a2"), sorted(problems.get("a/First")));
+            assertEquals(Arrays.asList("c1", "c2"), sorted(problems.get("c/Third")));
+        }
+        assertEquals(0, spillDir.list().length);
+    }
+
+    @Test
+    public void compactsRunsBeyondMergeWidth() throws IOException {
+        File spillDir = folder.newFolder();
+        try (ProblemStore store = new ProblemStore(1, spillDir.toPath())) {
+            List<String> expected = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                String message = String.format("m%03d", i);
+                store.add(problem("p/Class" + (i % 7) + "#" + i, message));
+                expected.add(message);
+            }
+            assertEquals(200, spillDir.list().length);
+
+            Map<String, List<String>> problems = read(store);
+
+            assertTrue(spillDir.list().length <= 64);
+            List<String> classes = new ArrayList<>(problems.keySet());
+            assertEquals(sorted(classes), classes);
+            assertEquals(7, classes.size());
+            List<String> messages = new ArrayList<>();
+            for (List<String> classMessages : problems.values()) {
+                messages.addAll(classMessages);
+            }
+            assertEquals(expected, sorted(messages));
+        }
+        assertEquals(0, spillDir.list().length);
+    }
+
+    @Test
+    public void keepsProblemFields() throws IOException {
+        try (ProblemStore store = new ProblemStore(1, folder.newFolder().toPath())) {
+            store.add(new Problem("a/First#3", Status.THREAT, Severety.ERROR, null));
+            List<Problem> read = new ArrayList<>();
+            store.forEachClass((clazz, problems) -> read.addAll(problems));
+
+            assertEquals(1, read.size());
+            assertEquals("a/First#3", read.get(0).getElement());
+            assertEquals(Status.THREAT, read.get(0).getStatus());
+            assertEquals(Severety.ERROR, read.get(0).getSeverety());
+            assertEquals(null, read.get(0).getMessage());
+        }
+    }
+
+    private static Problem problem(String element, String message) {
+        return new Problem(element, Status.BUG, Severety.WARNING, message);
+    }
+
+    private static Map<String, List<String>> read(ProblemStore store) throws IOException {
+        Map<String, List<String>> result = new LinkedHashMap<>();
+        store.forEachClass((clazz, problems) -> {
+            List<String> messages = new ArrayList<>();
+            for (Problem problem : problems) {
+                messages.add(problem.getMessage());
+            }
+            result.put(clazz, messages);
+        });
+        return result;
+    }
+
+    private static List<String> sorted(List<String> values) {
+        List<String> copy = new ArrayList<>(values);
+        Collections.sort(copy);
+        return copy;
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.stackdrive.sonarqube.report;
+
+import com.google.gson.Gson;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.stackdrive.sonarqube.ReportTypeAdapters;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ReportStreamReaderTest {
+
+    private static final Gson GSON = ReportTypeAdapters.create();
+
+    private static final String SECTION = "risks";
+
+    @Rule
+    public final TemporaryFolder temp = new TemporaryFolder();
+
+    private final List<String> bugs = new ArrayList<>();
+
+    private final List<String> threats = new ArrayList<>();
+
+    private final TabRouter router = new TabRouter()
+            .register("Bugs", row -> bugs.add(row.getCell1()))
+            .register("Threats", row -> threats.add(row.getCell1()));
+
+    @Test
+    public void routesTablesOfSection() throws IOException {
+        Set<String> truncated = read(ParseLimits.NONE,
+                tab("Bugs", dataTable("b1", "b2")),
+                tab("Threats", dataTable("t1")),
+                tab("Other", dataTable("o1")));
+
+        assertEquals(Arrays.asList("b1", "b2"), bugs);
+        assertEquals(Collections.singletonList("t1"), threats);
+        assertTrue(truncated.isEmpty());
+    }
+
+    @Test
+    public void routesTitleAfterElement() throws IOException {
+        read(ParseLimits.NONE, "{\"element\":" + dataTable("b1", "b2") + ",\"title\":\"Bugs\"}");
+
+        assertEquals(Arrays.asList("b1", "b2"), bugs);
+    }
+
+    @Test
+    public void routesTableBeforeType() throws IOException {
+        read(ParseLimits.NONE,
+                tab("Bugs", "{\"table\":[" + row("b1") + "],\"type\":\"DataTable\"}"),
+                tab("Threats", "{\"table\":[" + row("t1") + "],\"type\":\"CommentList\"}"));
+
+        assertEquals(Collections.singletonList("b1"), bugs);
+        assertTrue(threats.isEmpty());
+    }
+
+    @Test
+    public void spillsRowsUntilTitleAndType() throws IOException {
+        String json = "{\"sectionList\":{\"" + SECTION + "\":" + section(
+                "{\"element\":{\"table\":[" + row("b1") + "," + row("b2") + "],\"type\":\"DataTable\"},\"title\":\"Bugs\"}",
+                "{\"element\":" + dataTable("o1") + ",\"title\":\"Other\"}") + "}}";
+
+        new ReportStreamReader(GSON, ParseLimits.NONE, temp.getRoot().toPath()).read(new StringReader(json), router, SECTION);
+
+        assertEquals(Arrays.asList("b1", "b2"), bugs);
+        assertArrayEquals(new String[0], temp.getRoot().list());
+    }
+
+    @Test
+    public void routesFirstTabOfTitleOnly() throws IOException {
+        read(ParseLimits.NONE,
+                tab("Bugs", dataTable("b1")),
+                tab("Bugs", dataTable("b2")));
+
+        assertEquals(Collections.singletonList("b1"), bugs);
+    }
+
+    @Test
+    public void skipsOtherSections() throws IOException {
+        String json = "{\"sectionList\":{\"other\":" + section(tab("Bugs", dataTable("o1"))) + "},\"extra\":[1,2]}";
+
+        new ReportStreamReader(GSON, ParseLimits.NONE).read(new StringReader(json), router, SECTION);
+
+        assertTrue(bugs.isEmpty());
+    }
+
+    @Test
+    public void truncatesTablesToRowsLimit() throws IOException {
+        ParseLimits limits = new ParseLimits(0, 2, 0, 0);
+
+        Set<String> truncated = read(limits,
+                tab("Bugs", dataTable("b1", "b2", "b3")),
+                "{\"element\":" + dataTable("t1", "t2", "t3") + ",\"title\":\"Threats\"}");
+
+        assertEquals(Arrays.asList("b1", "b2"), bugs);
+        assertEquals(Arrays.asList("t1", "t2"), threats);
+        assertEquals(new ArrayList<>(Arrays.asList("Bugs", "Threats")), new ArrayList<>(truncated));
+    }
+
+    @Test
+    public void keepsTablesWithinRowsLimit() throws IOException {
+        Set<String> truncated = read(new ParseLimits(0, 2, 0, 0), tab("Bugs", dataTable("b1", "b2")));
+
+        assertEquals(Arrays.asList("b1", "b2"), bugs);
+        assertTrue(truncated.isEmpty());
+    }
+
+    @Test(expected = ParseLimitExceededException.class)
+    public void reportsLimitCrossedInSpilledElement() throws IOException {
+        ParseLimits limits = new ParseLimits(0, 0, 16, 0);
+        // padded so that the long cell is read while the rows are spilled, not with the first chunk
+        StringBuilder padding = new StringBuilder("[0");
+        for (int i = 0; i < 16 * 1024; i++) {
+            padding.append(",0");
+        }
+        String element = "{\"padding\":" + padding + "],\"type\":\"DataTable\",\"table\":[" + row("a cell longer than the limit") + "]}";
+        String json = "{\"sectionList\":{\"" + SECTION + "\":" + section("{\"element\":" + element + ",\"title\":\"Bugs\"}") + "}}";
+        LimitingInputStream input = new LimitingInputStream(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)), limits);
+
+        new ReportStreamReader(GSON, limits).read(new InputStreamReader(input, StandardCharsets.UTF_8), router, SECTION);
+    }
+
+    private Set<String> read(ParseLimits limits, String... tabs) throws IOException {
+        String json = "{\"sectionList\":{\"" + SECTION + "\":" + section(tabs) + "}}";
+        return new ReportStreamReader(GSON, limits).read(new StringReader(json), router, SECTION);
+    }
+
+    private static String section(String... tabs) {
+        return "{\"tabbedList\":[{\"tabPaneList\":[" + String.join(",", tabs) + "]}]}";
+    }
+
+    private static String tab(String title, String element) {
+        return "{\"title\":\"" + title + "\",\"element\":" + element + "}";
+    }
+
+    private static String dataTable(String... cells) {
+        List<String> rows = new ArrayList<>();
+        for (String cell : cells) {
+            rows.add(row(cell));
+        }
+        return "{\"type\":\"DataTable\",\"table\":[" + String.join(",", rows) + "]}";
+    }
+
+    private static String row(String cell) {
+        return "{\"imageCode\":\"i\",\"cell1\":\"" + cell + "\"}";
+    }
+}